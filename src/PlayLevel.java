@@ -18,6 +18,9 @@ public class PlayLevel {
                 " Falls: " + result.getKillsByFall() + ")");
         System.out.println("Bricks: " + result.getNumDestroyedBricks() + " Jumps: " + result.getNumJumps() +
                 " Max X Jump: " + result.getMaxXJump() + " Max Air Time: " + result.getMaxJumpAirTime());
+        if (result.getTickStats() != null) {
+            System.out.println("Tick Stats: " + result.getTickStats());
+        }
         System.out.println("****************************************************************");
     }
 
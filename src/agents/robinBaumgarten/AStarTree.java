@@ -1,83 +1,272 @@
 package agents.robinBaumgarten;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import engine.core.MarioForwardModel;
 import engine.core.MarioTimer;
 import engine.helper.GameStatus;
 
 public class AStarTree {
+    /**
+     * number of search nodes that keep their snapshot by default
+     */
+    public static final int DEFAULT_SNAPSHOT_CACHE_SIZE = 4096;
+    /**
+     * deepest level of the tree that is split between the workers of a parallel search
+     */
+    private static final int MAX_SPLIT_DEPTH = 3;
+    // outcomes of the checks on a simulated node
+    private static final int NODE_DROPPED = 0;
+    private static final int NODE_REQUEUED = 1;
+    private static final int NODE_GOOD = 2;
+
     public SearchNode bestPosition;
     public SearchNode furthestPosition;
+    SearchNode rootPosition;
     float currentSearchStartingMarioXPos;
-    ArrayList<SearchNode> posPool;
-    ArrayList<int[]> visitedStates = new ArrayList<int[]>();
+    SearchNodeHeap posPool = new SearchNodeHeap();
+    VisitedSet visitedStates = new VisitedSet();
+    private final SnapshotCache snapshots;
+    private long expandedNodes;
     private boolean requireReplanning = false;
 
     private ArrayList<boolean[]> currentActionPlan;
     int ticksBeforeReplanning = 0;
 
-    private MarioForwardModel search(MarioTimer timer) {
+    public AStarTree() {
+        this(DEFAULT_SNAPSHOT_CACHE_SIZE);
+    }
+
+    /**
+     * Create a search that keeps a bounded number of snapshots, the nodes past that number
+     * drop their snapshot and replay their actions from the closest ancestor that has one
+     * when they need it again
+     *
+     * @param snapshotCacheSize the number of search nodes that keep their snapshot, at least 1
+     */
+    public AStarTree(int snapshotCacheSize) {
+        this.snapshots = new SnapshotCache(snapshotCacheSize);
+    }
+
+    /**
+     * Get the number of snapshot reads that found the snapshot in memory
+     *
+     * @return the number of hits since the tree was created
+     */
+    public long getSnapshotHits() {
+        return snapshots.getHits();
+    }
+
+    /**
+     * Get the number of snapshot reads that had to replay actions
+     *
+     * @return the number of misses since the tree was created
+     */
+    public long getSnapshotMisses() {
+        return snapshots.getMisses();
+    }
+
+    /**
+     * Get the number of nodes the search simulated
+     *
+     * @return the number of expanded nodes since the tree was created
+     */
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    MarioForwardModel search(MarioTimer timer) {
         SearchNode current = bestPosition;
         boolean currentGood = false;
         int maxRight = 176;
         while (posPool.size() != 0
-                && ((bestPosition.sceneSnapshot.getMarioFloatPos()[0] - currentSearchStartingMarioXPos < maxRight) || !currentGood)
+                && ((bestPosition.marioX - currentSearchStartingMarioXPos < maxRight) || !currentGood)
                 && timer.getRemainingTime() > 0) {
-            current = pickBestPos(posPool);
+            current = posPool.poll(10000000);
             if (current == null) {
                 return null;
             }
             currentGood = false;
             float realRemainingTime = current.simulatePos();
+            expandedNodes++;
 
-            if (realRemainingTime < 0) {
-                continue;
-            } else if (!current.isInVisitedList && isInVisited((int) current.sceneSnapshot.getMarioFloatPos()[0],
-                    (int) current.sceneSnapshot.getMarioFloatPos()[1], current.timeElapsed)) {
-                realRemainingTime += Helper.visitedListPenalty;
-                current.isInVisitedList = true;
-                current.remainingTime = realRemainingTime;
-                current.remainingTimeEstimated = realRemainingTime;
+            int outcome = checkNode(current, realRemainingTime);
+            if (outcome == NODE_REQUEUED) {
                 posPool.add(current);
-            } else if (realRemainingTime - current.remainingTimeEstimated > 0.1) {
-                // current item is not as good as anticipated. put it back in pool and look for best again
-                current.remainingTimeEstimated = realRemainingTime;
-                posPool.add(current);
-            } else {
+            } else if (outcome == NODE_GOOD) {
                 currentGood = true;
-                visited((int) current.sceneSnapshot.getMarioFloatPos()[0], (int) current.sceneSnapshot.getMarioFloatPos()[1], current.timeElapsed);
                 posPool.addAll(current.generateChildren());
             }
-            if (currentGood) {
-                if (bestPosition.getRemainingTime() > current.getRemainingTime())
-                    bestPosition = current;
-                if (current.sceneSnapshot.getMarioFloatPos()[0] > furthestPosition.sceneSnapshot.getMarioFloatPos()[0])
-                    furthestPosition = current;
-            }
         }
-        if (current.sceneSnapshot.getMarioFloatPos()[0] - currentSearchStartingMarioXPos < maxRight
-                && furthestPosition.sceneSnapshot.getMarioFloatPos()[0] > bestPosition.sceneSnapshot.getMarioFloatPos()[0] + 20)
+        if (current.marioX - currentSearchStartingMarioXPos < maxRight
+                && furthestPosition.marioX > bestPosition.marioX + 20)
             // Couldnt plan till end of screen, take furthest
             bestPosition = furthestPosition;
 
-        return current.sceneSnapshot;
+        return current.getSnapshot();
+    }
+
+    /**
+     * Apply the penalties of a node that was just simulated and keep track of the best
+     * positions, a good node is added to the visited positions and can be expanded
+     *
+     * @return NODE_DROPPED, NODE_REQUEUED if the node has to go back to the open list with
+     * its real cost or NODE_GOOD
+     */
+    private int checkNode(SearchNode current, float realRemainingTime) {
+        if (realRemainingTime < 0) {
+            return NODE_DROPPED;
+        } else if (!current.isInVisitedList && isInVisited((int) current.marioX, (int) current.marioY,
+                current.timeElapsed)) {
+            realRemainingTime += Helper.visitedListPenalty;
+            current.isInVisitedList = true;
+            current.remainingTime = realRemainingTime;
+            current.remainingTimeEstimated = realRemainingTime;
+            return NODE_REQUEUED;
+        } else if (realRemainingTime - current.remainingTimeEstimated > 0.1) {
+            // current item is not as good as anticipated. put it back in pool and look for best again
+            current.remainingTimeEstimated = realRemainingTime;
+            return NODE_REQUEUED;
+        }
+        visited(current);
+        if (bestPosition.getRemainingTime() > current.getRemainingTime())
+            bestPosition = current;
+        if (current.marioX > furthestPosition.marioX)
+            furthestPosition = current;
+        return NODE_GOOD;
     }
 
     private void startSearch(MarioForwardModel model, int repetitions) {
-        SearchNode startPos = new SearchNode(null, repetitions, null);
-        startPos.initializeRoot(model);
+        startSearch(model, repetitions, 0, 1);
+    }
 
-        posPool = new ArrayList<SearchNode>();
+    /**
+     * Start a search that only explores a part of the tree, used by the workers of a root
+     * parallel search. The nodes below the root are expanded level by level until there is
+     * one per worker and the worker keeps every workers-th node of that level. The expanded
+     * nodes go through the same checks as in the search, the ones that fail them stay on the
+     * level with their real cost instead of being expanded. They are not counted in the
+     * expanded nodes since every worker simulates the same ones.
+     *
+     * @param model       the state to search from
+     * @param repetitions the number of ticks each action of the search is held
+     * @param worker      the index of the worker, between 0 and workers - 1
+     * @param workers     the number of workers that share the tree
+     */
+    void startSearch(MarioForwardModel model, int repetitions, int worker, int workers) {
+        posPool.clear();
         visitedStates.clear();
-        posPool.addAll(startPos.generateChildren());
+        snapshots.clear();
+
+        SearchNode startPos = new SearchNode(null, repetitions, null);
+        startPos.snapshots = snapshots;
+        startPos.initializeRoot(model);
         currentSearchStartingMarioXPos = model.getMarioFloatPos()[0];
 
         bestPosition = startPos;
         furthestPosition = startPos;
+        rootPosition = startPos;
+
+        ArrayList<SearchNode> frontier = startPos.generateChildren();
+        for (int depth = 1; depth < MAX_SPLIT_DEPTH && frontier.size() < workers; depth++) {
+            ArrayList<SearchNode> next = new ArrayList<SearchNode>();
+            boolean expanded = false;
+            for (SearchNode node : frontier) {
+                if (node.simulated) {
+                    // already failed the checks on an earlier level
+                    next.add(node);
+                    continue;
+                }
+                int outcome = checkNode(node, node.simulatePos());
+                if (outcome == NODE_REQUEUED) {
+                    next.add(node);
+                } else if (outcome == NODE_GOOD) {
+                    expanded = true;
+                    next.addAll(node.generateChildren());
+                }
+            }
+            frontier = next;
+            if (!expanded) {
+                break;
+            }
+        }
+        for (int i = worker; i < frontier.size(); i += workers) {
+            posPool.add(frontier.get(i));
+        }
+    }
+
+    /**
+     * Find the node of the current tree that the next search would start from, it is the
+     * first node on the way to the best position when the world went as predicted
+     *
+     * @param model     the current state of the game
+     * @param planAhead the number of ticks the new root is ahead of the current state
+     * @return the node to search from or null if the tree can't be reused
+     */
+    private SearchNode findReusableRoot(MarioForwardModel model, int planAhead) {
+        if (rootPosition == null || bestPosition == null || !isSameState(rootPosition.getSnapshot(), model)) {
+            return null;
+        }
+        if (planAhead == 0) {
+            return rootPosition;
+        }
+        SearchNode node = bestPosition;
+        while (node != null && node.parentPos != rootPosition) {
+            node = node.parentPos;
+        }
+        if (node == null || node.repetitions != planAhead || !node.simulated) {
+            return null;
+        }
+        return node;
+    }
+
+    /**
+     * Continue the search from a node of the current tree, keeping the part of the tree,
+     * the open list and the visited positions below it
+     */
+    private void reuseSearch(SearchNode newRoot) {
+        // the root has nothing to replay from so it keeps its snapshot outside of the cache
+        newRoot.getSnapshot();
+        snapshots.pin(newRoot);
+        newRoot.parentPos = null;
+        rootPosition = newRoot;
+        posPool.retain(this::isBelowRoot);
+        visitedStates.retain(this::isBelowRoot);
+        snapshots.retain(this::isBelowRoot);
+        currentSearchStartingMarioXPos = newRoot.marioX;
+        if (!isBelowRoot(bestPosition)) {
+            bestPosition = newRoot;
+        }
+        if (!isBelowRoot(furthestPosition)) {
+            furthestPosition = newRoot;
+        }
+    }
+
+    private boolean isBelowRoot(SearchNode node) {
+        // the new root has no parent, the nodes of the dropped branches end at the old root
+        while (node.parentPos != null) {
+            node = node.parentPos;
+        }
+        return node == rootPosition;
+    }
+
+    private boolean isSameState(MarioForwardModel predicted, MarioForwardModel model) {
+        if (predicted.getGameStatus() != model.getGameStatus() || predicted.getRemainingTime() != model.getRemainingTime()
+                || predicted.getMarioX() != model.getMarioX() || predicted.getMarioY() != model.getMarioY()
+                || predicted.getMarioXVelocity() != model.getMarioXVelocity()
+                || predicted.getMarioYVelocity() != model.getMarioYVelocity()
+                || predicted.getMarioMode() != model.getMarioMode() || predicted.isMarioOnGround() != model.isMarioOnGround()
+                || predicted.mayMarioJump() != model.mayMarioJump()
+                || predicted.getMarioCanJumpHigher() != model.getMarioCanJumpHigher()
+                || predicted.getKillsTotal() != model.getKillsTotal()
+                || predicted.getNumCollectedCoins() != model.getNumCollectedCoins()) {
+            return false;
+        }
+        return Arrays.equals(predicted.getEnemiesFloatPos(), model.getEnemiesFloatPos());
     }
 
-    private ArrayList<boolean[]> extractPlan() {
+    ArrayList<boolean[]> extractPlan() {
         ArrayList<boolean[]> actions = new ArrayList<boolean[]>();
 
         // just move forward if no best position exists
@@ -100,20 +289,6 @@ public class AStarTree {
         return actions;
     }
 
-    private SearchNode pickBestPos(ArrayList<SearchNode> posPool) {
-        SearchNode bestPos = null;
-        float bestPosCost = 10000000;
-        for (SearchNode current : posPool) {
-            float currentCost = current.getRemainingTime() + current.timeElapsed * 0.90f; // slightly bias towards furthest positions
-            if (currentCost < bestPosCost) {
-                bestPos = current;
-                bestPosCost = currentCost;
-            }
-        }
-        posPool.remove(bestPos);
-        return bestPos;
-    }
-
     public boolean[] optimise(MarioForwardModel model, MarioTimer timer) {
         int planAhead = 2;
         int stepsPerSearch = 2;
@@ -127,11 +302,17 @@ public class AStarTree {
                 planAhead = currentActionPlan.size();
             }
 
+            SearchNode reusableRoot = findReusableRoot(model, planAhead);
+
             // simulate ahead to predicted future state, and then plan for this future state
             for (int i = 0; i < planAhead; i++) {
                 model.advance(currentActionPlan.get(i));
             }
-            startSearch(model, stepsPerSearch);
+            if (reusableRoot != null && isSameState(reusableRoot.getSnapshot(), model)) {
+                reuseSearch(reusableRoot);
+            } else {
+                startSearch(model, stepsPerSearch);
+            }
             ticksBeforeReplanning = planAhead;
         }
         if (model.getGameStatus() == GameStatus.LOSE) {
@@ -145,21 +326,12 @@ public class AStarTree {
         return action;
     }
 
-    private void visited(int x, int y, int t) {
-        visitedStates.add(new int[]{x, y, t});
+    private void visited(SearchNode node) {
+        visitedStates.add((int) node.marioX, (int) node.marioY, node.timeElapsed, node);
     }
 
     private boolean isInVisited(int x, int y, int t) {
-        int timeDiff = 5;
-        int xDiff = 2;
-        int yDiff = 2;
-        for (int[] v : visitedStates) {
-            if (Math.abs(v[0] - x) < xDiff && Math.abs(v[1] - y) < yDiff && Math.abs(v[2] - t) < timeDiff
-                    && t >= v[2]) {
-                return true;
-            }
-        }
-        return false;
+        return visitedStates.contains(x, y, t);
     }
 
 }
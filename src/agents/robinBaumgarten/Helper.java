@@ -75,7 +75,8 @@ public class Helper {
     public static boolean canJumpHigher(SearchNode node, boolean checkParent) {
         if (node.parentPos != null && checkParent && canJumpHigher(node.parentPos, false))
             return true;
-        return node.sceneSnapshot.mayMarioJump() || node.sceneSnapshot.getMarioCanJumpHigher();
+        MarioForwardModel snapshot = node.getSnapshot();
+        return snapshot.mayMarioJump() || snapshot.getMarioCanJumpHigher();
     }
 
     public static ArrayList<boolean[]> createPossibleActions(SearchNode node) {
@@ -0,0 +1,201 @@
+package agents.robinBaumgarten;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import engine.core.MarioForwardModel;
+import engine.core.MarioTimer;
+import engine.helper.GameStatus;
+
+/**
+ * Root parallel version of AStarTree. Every worker owns a search tree on its own copy of
+ * the game and explores a share of the nodes below the root, the plan is taken from the
+ * worker that found the best position when the time runs out, preferring the positions
+ * that mario reaches without getting hurt.
+ */
+public class ParallelAStarTree {
+    /**
+     * the pools of the workers by number of threads. They are shared by all the searches so
+     * an agent created for every game doesn't leave its own threads behind, and their idle
+     * threads are daemons that stop by themselves.
+     */
+    private static final HashMap<Integer, ForkJoinPool> POOLS = new HashMap<>();
+
+    private final AStarTree[] workers;
+    private final long[] workerNanos;
+    private final long[] workerNodes;
+    private final ForkJoinPool pool;
+    private AStarTree planTree;
+
+    private ArrayList<boolean[]> currentActionPlan;
+    int ticksBeforeReplanning = 0;
+
+    /**
+     * Create a search with one worker per core
+     */
+    public ParallelAStarTree() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a search with a number of workers, a single worker searches on the calling thread
+     *
+     * @param threads the number of workers, at least 1
+     */
+    public ParallelAStarTree(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("the search needs at least one thread");
+        }
+        this.workers = new AStarTree[threads];
+        for (int i = 0; i < threads; i++) {
+            this.workers[i] = new AStarTree();
+        }
+        this.workerNanos = new long[threads];
+        this.workerNodes = new long[threads];
+        this.pool = threads > 1 ? getPool(threads) : null;
+        this.planTree = this.workers[0];
+    }
+
+    private static synchronized ForkJoinPool getPool(int threads) {
+        return POOLS.computeIfAbsent(threads, ForkJoinPool::new);
+    }
+
+    /**
+     * Get the number of workers
+     *
+     * @return the number of threads that search
+     */
+    public int getThreads() {
+        return this.workers.length;
+    }
+
+    /**
+     * Get the number of nodes a worker simulated
+     *
+     * @param worker the index of the worker
+     * @return the number of expanded nodes since the search was created
+     */
+    public long getExpandedNodes(int worker) {
+        return this.workerNodes[worker];
+    }
+
+    /**
+     * Get the search speed of a worker
+     *
+     * @param worker the index of the worker
+     * @return the number of nodes expanded per second of search time of the worker
+     */
+    public double getNodesPerSecond(int worker) {
+        return this.workerNanos[worker] == 0 ? 0 : this.workerNodes[worker] * 1e9 / this.workerNanos[worker];
+    }
+
+    /**
+     * Get the average search speed of the workers, it stays flat when the search scales
+     *
+     * @return the number of nodes expanded per second per thread
+     */
+    public double getNodesPerSecondPerThread() {
+        long nodes = 0;
+        long nanos = 0;
+        for (int i = 0; i < this.workers.length; i++) {
+            nodes += this.workerNodes[i];
+            nanos += this.workerNanos[i];
+        }
+        return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+    }
+
+    public boolean[] optimise(MarioForwardModel model, MarioTimer timer) {
+        int planAhead = 2;
+        int stepsPerSearch = 2;
+
+        MarioForwardModel originalModel = model.clone();
+        MarioForwardModel searchModel = null;
+        ticksBeforeReplanning--;
+        // the trees are rooted planAhead ticks after the last replan, so a plan can only be
+        // taken from them when the game reached that root
+        if (ticksBeforeReplanning <= 0 || currentActionPlan.size() == 0) {
+            currentActionPlan = planTree.extractPlan();
+            if (currentActionPlan.size() < planAhead) {
+                planAhead = currentActionPlan.size();
+            }
+
+            // simulate ahead to predicted future state, and then plan for this future state
+            for (int i = 0; i < planAhead; i++) {
+                model.advance(currentActionPlan.get(i));
+            }
+            searchModel = model;
+            ticksBeforeReplanning = planAhead;
+        }
+        if (model.getGameStatus() == GameStatus.LOSE) {
+            searchModel = originalModel;
+        }
+        search(searchModel, stepsPerSearch, timer);
+
+        boolean[] action = new boolean[5];
+        if (currentActionPlan.size() > 0)
+            action = currentActionPlan.remove(0);
+        return action;
+    }
+
+    /**
+     * Run the workers until the time runs out
+     *
+     * @param model the state to start new searches from or null to continue the current ones
+     */
+    private void search(MarioForwardModel model, int repetitions, MarioTimer timer) {
+        if (this.pool == null) {
+            this.searchWorker(0, model, repetitions, timer);
+        } else {
+            // the workers get their copies here, the model is not read by several threads
+            ArrayList<ForkJoinTask<?>> jobs = new ArrayList<>();
+            for (int w = 0; w < this.workers.length; w++) {
+                int worker = w;
+                MarioForwardModel workerModel = model == null ? null : model.clone();
+                jobs.add(this.pool.submit(() -> this.searchWorker(worker, workerModel, repetitions, timer)));
+            }
+            for (ForkJoinTask<?> job : jobs) {
+                job.join();
+            }
+        }
+
+        planTree = this.workers[0];
+        boolean planHurt = isHurtOnPath(planTree.bestPosition);
+        for (AStarTree worker : this.workers) {
+            boolean hurt = isHurtOnPath(worker.bestPosition);
+            if ((planHurt && !hurt) || (hurt == planHurt
+                    && worker.bestPosition.getRemainingTime() < planTree.bestPosition.getRemainingTime())) {
+                planTree = worker;
+                planHurt = hurt;
+            }
+        }
+    }
+
+    /**
+     * Check if mario gets hurt on the way from the root to a node, the cost of the nodes
+     * below the hurt one doesn't include the damage
+     */
+    private static boolean isHurtOnPath(SearchNode node) {
+        while (node != null) {
+            if (node.hasBeenHurt) {
+                return true;
+            }
+            node = node.parentPos;
+        }
+        return false;
+    }
+
+    private void searchWorker(int worker, MarioForwardModel model, int repetitions, MarioTimer timer) {
+        AStarTree tree = this.workers[worker];
+        if (model != null) {
+            tree.startSearch(model, repetitions, worker, this.workers.length);
+        }
+        // the split of the tree is the same for every worker so it is not part of the speed
+        long start = System.nanoTime();
+        long nodes = tree.getExpandedNodes();
+        tree.search(timer);
+        this.workerNanos[worker] += System.nanoTime() - start;
+        this.workerNodes[worker] += tree.getExpandedNodes() - nodes;
+    }
+}
@@ -0,0 +1,44 @@
+package agents.robinBaumgarten;
+
+import engine.core.MarioAgent;
+import engine.core.MarioForwardModel;
+import engine.core.MarioTimer;
+import engine.helper.MarioActions;
+
+/**
+ * The A* agent with the search split between several threads
+ */
+public class ParallelAgent implements MarioAgent {
+    private boolean[] action;
+    private ParallelAStarTree tree;
+    private final int threads;
+
+    /**
+     * Create an agent that searches with one thread per core
+     */
+    public ParallelAgent() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelAgent(int threads) {
+        this.threads = threads;
+    }
+
+    @Override
+    public void initialize(MarioForwardModel model, MarioTimer timer) {
+        this.action = new boolean[MarioActions.numberOfActions()];
+        this.tree = new ParallelAStarTree(this.threads);
+    }
+
+    @Override
+    public boolean[] getActions(MarioForwardModel model, MarioTimer timer) {
+        action = this.tree.optimise(model, timer);
+        return action;
+    }
+
+    @Override
+    public String getAgentName() {
+        return "RobinBaumgartenParallelAgent";
+    }
+
+}
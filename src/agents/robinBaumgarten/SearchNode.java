@@ -11,13 +11,24 @@ public class SearchNode {
     public float remainingTime = 0;
 
     public SearchNode parentPos = null;
+    /**
+     * the state after the action of the node, can be dropped by the snapshot cache, use getSnapshot to read it
+     */
     public MarioForwardModel sceneSnapshot = null;
+    /**
+     * mario position in the snapshot, kept when the snapshot is dropped
+     */
+    public float marioX = 0;
+    public float marioY = 0;
     public int distanceFromOrigin = 0;
     public boolean hasBeenHurt = false;
     public boolean isInVisitedList = false;
 
     boolean[] action;
     int repetitions = 1;
+    int heapIndex = -1;
+    SnapshotCache snapshots;
+    boolean simulated = false;
 
     public float calcRemainingTime(float marioX, float marioXA) {
         return (100000 - (maxForwardMovement(marioXA, 1000) + marioX)) / Helper.maxMarioSpeed - 1000;
@@ -32,14 +43,26 @@ public class SearchNode {
 
     public float estimateRemainingTimeChild(boolean[] action, int repetitions) {
         float[] childbehaviorDistanceAndSpeed = Helper.estimateMaximumForwardMovement(
-                this.sceneSnapshot.getMarioFloatVelocity()[0], action, repetitions);
-        return calcRemainingTime(this.sceneSnapshot.getMarioFloatPos()[0] + childbehaviorDistanceAndSpeed[0],
-                childbehaviorDistanceAndSpeed[1]);
+                this.getSnapshot().getMarioFloatVelocity()[0], action, repetitions);
+        return calcRemainingTime(this.marioX + childbehaviorDistanceAndSpeed[0], childbehaviorDistanceAndSpeed[1]);
+    }
+
+    /**
+     * Get the state after the action of the node, replaying it if the snapshot cache dropped it
+     *
+     * @return the snapshot of the node or null if it was never simulated
+     */
+    public MarioForwardModel getSnapshot() {
+        if (this.snapshots == null || !this.simulated) {
+            return this.sceneSnapshot;
+        }
+        return this.snapshots.get(this);
     }
 
     public SearchNode(boolean[] action, int repetitions, SearchNode parent) {
         this.parentPos = parent;
         if (parent != null) {
+            this.snapshots = parent.snapshots;
             this.remainingTimeEstimated = parent.estimateRemainingTimeChild(action, repetitions);
             this.distanceFromOrigin = parent.distanceFromOrigin + 1;
         }
@@ -54,16 +77,26 @@ public class SearchNode {
     public void initializeRoot(MarioForwardModel model) {
         if (this.parentPos == null) {
             this.sceneSnapshot = model.clone();
+            this.marioX = model.getMarioFloatPos()[0];
+            this.marioY = model.getMarioFloatPos()[1];
+            this.simulated = true;
             this.remainingTimeEstimated = calcRemainingTime(model.getMarioFloatPos()[0], 0);
         }
     }
 
     public float simulatePos() {
-        this.sceneSnapshot = parentPos.sceneSnapshot.clone();
+        MarioForwardModel parentSnapshot = parentPos.getSnapshot();
+        this.sceneSnapshot = parentSnapshot.clone();
         for (int i = 0; i < repetitions; i++) {
             this.sceneSnapshot.advance(action);
         }
-        int marioDamage = Helper.getMarioDamage(this.sceneSnapshot, this.parentPos.sceneSnapshot);
+        this.marioX = this.sceneSnapshot.getMarioFloatPos()[0];
+        this.marioY = this.sceneSnapshot.getMarioFloatPos()[1];
+        this.simulated = true;
+        if (this.snapshots != null) {
+            this.snapshots.add(this);
+        }
+        int marioDamage = Helper.getMarioDamage(this.sceneSnapshot, parentSnapshot);
         remainingTime =
                 calcRemainingTime(this.sceneSnapshot.getMarioFloatPos()[0], this.sceneSnapshot.getMarioFloatVelocity()[0]) +
                         marioDamage * (1000000 - 100 * distanceFromOrigin);
@@ -87,10 +120,10 @@ public class SearchNode {
     }
 
     public boolean isLeafNode() {
-        if (this.sceneSnapshot == null) {
+        if (!this.simulated) {
             return false;
         }
-        return this.sceneSnapshot.getGameStatus() != GameStatus.RUNNING;
+        return this.getSnapshot().getGameStatus() != GameStatus.RUNNING;
     }
 
     private float maxForwardMovement(float initialSpeed, int ticks) {
@@ -0,0 +1,162 @@
+package agents.robinBaumgarten;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * Binary heap of the search nodes waiting to be expanded, ordered by their cost and then by
+ * the order they were added so ties are broken the same way as a linear scan of a list.
+ * Every node knows its index in the heap so its cost can be changed in place.
+ */
+class SearchNodeHeap {
+    private SearchNode[] nodes = new SearchNode[64];
+    private float[] costs = new float[64];
+    private long[] orders = new long[64];
+    private int size;
+    private long nextOrder;
+
+    /**
+     * The cost used to pick the next node, slightly biased towards the furthest positions
+     */
+    static float getCost(SearchNode node) {
+        float cost = node.getRemainingTime() + node.timeElapsed * 0.90f;
+        // NaN costs are never picked by a scan that keeps the smallest cost, they go last
+        return cost != cost ? Float.POSITIVE_INFINITY : cost;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.nodes[i].heapIndex = -1;
+        }
+        Arrays.fill(this.nodes, 0, this.size, null);
+        this.size = 0;
+        this.nextOrder = 0;
+    }
+
+    /**
+     * Add a node with its current cost. A node that is already in the heap keeps its
+     * place in the order of insertion and only gets its cost updated.
+     */
+    void add(SearchNode node) {
+        if (node.heapIndex >= 0) {
+            this.update(node);
+            return;
+        }
+        if (this.size == this.nodes.length) {
+            this.nodes = Arrays.copyOf(this.nodes, this.size * 2);
+            this.costs = Arrays.copyOf(this.costs, this.size * 2);
+            this.orders = Arrays.copyOf(this.orders, this.size * 2);
+        }
+        int index = this.size++;
+        this.set(index, node, getCost(node), this.nextOrder++);
+        this.siftUp(index);
+    }
+
+    void addAll(Collection<SearchNode> nodes) {
+        for (SearchNode node : nodes) {
+            this.add(node);
+        }
+    }
+
+    /**
+     * Move a node after its cost changed
+     */
+    void update(SearchNode node) {
+        int index = node.heapIndex;
+        this.costs[index] = getCost(node);
+        this.siftUp(index);
+        this.siftDown(node.heapIndex);
+    }
+
+    /**
+     * Remove all the nodes that don't match a condition, the others keep their order
+     */
+    void retain(Predicate<SearchNode> keep) {
+        int kept = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (keep.test(this.nodes[i])) {
+                this.set(kept++, this.nodes[i], this.costs[i], this.orders[i]);
+            } else {
+                this.nodes[i].heapIndex = -1;
+            }
+        }
+        Arrays.fill(this.nodes, kept, this.size, null);
+        this.size = kept;
+        for (int i = (this.size >> 1) - 1; i >= 0; i--) {
+            this.siftDown(i);
+        }
+    }
+
+    /**
+     * Remove the node with the lowest cost if that cost is below a limit
+     *
+     * @param maxCost the nodes with this cost or more are not returned
+     * @return the removed node or null if the heap is empty or no node is below the limit
+     */
+    SearchNode poll(float maxCost) {
+        if (this.size == 0 || !(this.costs[0] < maxCost)) {
+            return null;
+        }
+        SearchNode best = this.nodes[0];
+        best.heapIndex = -1;
+        this.size -= 1;
+        if (this.size > 0) {
+            this.set(0, this.nodes[this.size], this.costs[this.size], this.orders[this.size]);
+            this.siftDown(0);
+        }
+        this.nodes[this.size] = null;
+        return best;
+    }
+
+    private boolean isBefore(int a, int b) {
+        return this.costs[a] < this.costs[b] || (this.costs[a] == this.costs[b] && this.orders[a] < this.orders[b]);
+    }
+
+    private void set(int index, SearchNode node, float cost, long order) {
+        this.nodes[index] = node;
+        this.costs[index] = cost;
+        this.orders[index] = order;
+        node.heapIndex = index;
+    }
+
+    private void swap(int a, int b) {
+        SearchNode node = this.nodes[a];
+        float cost = this.costs[a];
+        long order = this.orders[a];
+        this.set(a, this.nodes[b], this.costs[b], this.orders[b]);
+        this.set(b, node, cost, order);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >> 1;
+            if (!this.isBefore(index, parent)) {
+                return;
+            }
+            this.swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= this.size) {
+                return;
+            }
+            if (child + 1 < this.size && this.isBefore(child + 1, child)) {
+                child += 1;
+            }
+            if (!this.isBefore(child, index)) {
+                return;
+            }
+            this.swap(index, child);
+            index = child;
+        }
+    }
+}
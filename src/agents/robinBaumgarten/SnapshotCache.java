@@ -0,0 +1,112 @@
+package agents.robinBaumgarten;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import engine.core.MarioForwardModel;
+
+/**
+ * Keeps the snapshots of the most recently used search nodes and drops the others. A node
+ * without a snapshot gets it back by replaying the actions from its closest ancestor that
+ * still has one. Roots are never in the cache so they always keep their snapshot.
+ */
+class SnapshotCache {
+    private final LinkedHashMap<SearchNode, Boolean> nodes;
+    private long hits;
+    private long misses;
+
+    SnapshotCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("the snapshot cache needs room for at least one node");
+        }
+        this.nodes = new LinkedHashMap<SearchNode, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SearchNode, Boolean> eldest) {
+                if (this.size() <= capacity) {
+                    return false;
+                }
+                eldest.getKey().sceneSnapshot = null;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get the snapshot of a node, replaying it if it was dropped
+     */
+    MarioForwardModel get(SearchNode node) {
+        if (node.sceneSnapshot != null) {
+            this.hits += 1;
+            if (node.parentPos != null) {
+                this.nodes.get(node);
+            }
+            return node.sceneSnapshot;
+        }
+        this.misses += 1;
+        ArrayList<SearchNode> path = new ArrayList<>();
+        SearchNode ancestor = node;
+        while (ancestor.sceneSnapshot == null) {
+            path.add(ancestor);
+            ancestor = ancestor.parentPos;
+        }
+        MarioForwardModel model = ancestor.sceneSnapshot.clone();
+        for (int i = path.size() - 1; i >= 0; i--) {
+            SearchNode step = path.get(i);
+            for (int r = 0; r < step.repetitions; r++) {
+                model.advance(step.action);
+            }
+        }
+        node.sceneSnapshot = model;
+        this.add(node);
+        return model;
+    }
+
+    /**
+     * Start tracking a node that just got its snapshot
+     */
+    void add(SearchNode node) {
+        if (node.parentPos != null) {
+            this.nodes.put(node, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Stop tracking a node so it keeps its snapshot, used for the roots
+     */
+    void pin(SearchNode node) {
+        this.nodes.remove(node);
+    }
+
+    /**
+     * Drop the snapshots of the nodes that don't match a condition
+     */
+    void retain(Predicate<SearchNode> keep) {
+        Iterator<SearchNode> iterator = this.nodes.keySet().iterator();
+        while (iterator.hasNext()) {
+            SearchNode node = iterator.next();
+            if (!keep.test(node)) {
+                node.sceneSnapshot = null;
+                iterator.remove();
+            }
+        }
+    }
+
+    void clear() {
+        this.retain(node -> false);
+    }
+
+    int size() {
+        return this.nodes.size();
+    }
+
+    long getHits() {
+        return this.hits;
+    }
+
+    long getMisses() {
+        return this.misses;
+    }
+}
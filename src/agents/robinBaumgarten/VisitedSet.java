@@ -0,0 +1,104 @@
+package agents.robinBaumgarten;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * The positions mario already reached during a search, hashed into cells of 2 by 2 pixels
+ * and 5 ticks. A position counts as visited when a recorded one is less than 2 pixels away
+ * on each axis and at most 4 ticks earlier, which only needs the few cells around it.
+ * Every position remembers the node that reached it so the set can follow a reused tree.
+ */
+class VisitedSet {
+    private static final int CELL_X = 2;
+    private static final int CELL_Y = 2;
+    private static final int CELL_T = 5;
+
+    private int[] buckets = new int[256];
+    private int[] next = new int[256];
+    private int[] positions = new int[3 * 256];
+    private SearchNode[] nodes = new SearchNode[256];
+    private int size;
+
+    VisitedSet() {
+        Arrays.fill(this.buckets, -1);
+    }
+
+    void clear() {
+        Arrays.fill(this.buckets, -1);
+        Arrays.fill(this.nodes, 0, this.size, null);
+        this.size = 0;
+    }
+
+    private int getBucket(int cellX, int cellY, int cellT) {
+        int hash = cellX * 0x9E3779B1 + cellY * 0x85EBCA77 + cellT * 0xC2B2AE3D;
+        return (hash ^ (hash >>> 15)) & (this.buckets.length - 1);
+    }
+
+    void add(int x, int y, int t, SearchNode node) {
+        if (this.size == this.next.length) {
+            this.next = Arrays.copyOf(this.next, this.size * 2);
+            this.positions = Arrays.copyOf(this.positions, 3 * this.size * 2);
+            this.nodes = Arrays.copyOf(this.nodes, this.size * 2);
+        }
+        if (this.size >= this.buckets.length) {
+            this.rehash(this.buckets.length * 4);
+        }
+        this.positions[3 * this.size] = x;
+        this.positions[3 * this.size + 1] = y;
+        this.positions[3 * this.size + 2] = t;
+        this.nodes[this.size] = node;
+        this.link(this.size);
+        this.size += 1;
+    }
+
+    private void link(int entry) {
+        int bucket = this.getBucket(Math.floorDiv(this.positions[3 * entry], CELL_X),
+                Math.floorDiv(this.positions[3 * entry + 1], CELL_Y), Math.floorDiv(this.positions[3 * entry + 2], CELL_T));
+        this.next[entry] = this.buckets[bucket];
+        this.buckets[bucket] = entry;
+    }
+
+    private void rehash(int bucketCount) {
+        this.buckets = new int[bucketCount];
+        Arrays.fill(this.buckets, -1);
+        for (int entry = 0; entry < this.size; entry++) {
+            this.link(entry);
+        }
+    }
+
+    /**
+     * Remove the positions reached by the nodes that don't match a condition
+     */
+    void retain(Predicate<SearchNode> keep) {
+        int kept = 0;
+        for (int entry = 0; entry < this.size; entry++) {
+            if (keep.test(this.nodes[entry])) {
+                System.arraycopy(this.positions, 3 * entry, this.positions, 3 * kept, 3);
+                this.nodes[kept++] = this.nodes[entry];
+            }
+        }
+        Arrays.fill(this.nodes, kept, this.size, null);
+        this.size = kept;
+        this.rehash(this.buckets.length);
+    }
+
+    boolean contains(int x, int y, int t) {
+        for (int cellX = Math.floorDiv(x - CELL_X + 1, CELL_X); cellX <= Math.floorDiv(x + CELL_X - 1, CELL_X); cellX++) {
+            for (int cellY = Math.floorDiv(y - CELL_Y + 1, CELL_Y); cellY <= Math.floorDiv(y + CELL_Y - 1, CELL_Y); cellY++) {
+                for (int cellT = Math.floorDiv(t - CELL_T + 1, CELL_T); cellT <= Math.floorDiv(t, CELL_T); cellT++) {
+                    // the bucket can also hold other cells, each entry is checked exactly
+                    for (int entry = this.buckets[this.getBucket(cellX, cellY, cellT)]; entry >= 0; entry = this.next[entry]) {
+                        int vx = this.positions[3 * entry];
+                        int vy = this.positions[3 * entry + 1];
+                        int vt = this.positions[3 * entry + 2];
+                        if (Math.abs(vx - x) < CELL_X && Math.abs(vy - y) < CELL_Y && Math.abs(vt - t) < CELL_T && t >= vt) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
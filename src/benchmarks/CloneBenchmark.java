@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import engine.core.MarioForwardModel;
+import engine.core.MarioWorld;
+import engine.helper.MarioActions;
+
+/**
+ * Measure the cost of cloning a forward model, copying it into a reused one, or going back
+ * to a checkpoint, on levels of growing width. The level is made by repeating the same level horizontally so only
+ * the width changes.
+ */
+public class CloneBenchmark {
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 100000;
+
+    private static String repeatLevel(String level, int times) {
+        String[] lines = level.split("\\r?\\n");
+        StringBuilder result = new StringBuilder();
+        for (String line : lines) {
+            for (int i = 0; i < times; i++) {
+                result.append(line);
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    private static long measure(MarioForwardModel model, boolean[] actions, boolean advance, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            MarioForwardModel clone = model.clone();
+            if (advance) {
+                clone.advance(actions);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long measureCopy(MarioForwardModel model, MarioForwardModel target, boolean[] actions, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            target.copyFrom(model);
+            target.advance(actions);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long measureRollback(MarioForwardModel model, boolean[] actions, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            int mark = model.checkpoint();
+            model.advance(actions);
+            model.rollback(mark);
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String path = args.length > 0 ? args[0] : "levels/original/lvl-1.txt";
+        String level = new String(Files.readAllBytes(Paths.get(path)));
+        boolean[] actions = new boolean[MarioActions.numberOfActions()];
+        actions[MarioActions.RIGHT.getValue()] = true;
+
+        System.out.println("width\tclone(ns)\tclone+advance(ns)\tcopyFrom+advance(ns)\tcheckpoint+advance+rollback(ns)");
+        for (int times = 1; times <= 16; times *= 2) {
+            MarioWorld world = new MarioWorld(null);
+            world.visuals = false;
+            world.initializeLevel(repeatLevel(level, times), 200000);
+            world.update(actions);
+            MarioForwardModel model = new MarioForwardModel(world);
+
+            measure(model, actions, true, WARMUP);
+            long clone = measure(model, actions, false, ITERATIONS);
+            long advance = measure(model, actions, true, ITERATIONS);
+            MarioForwardModel target = model.clone();
+            measureCopy(model, target, actions, WARMUP);
+            long copy = measureCopy(model, target, actions, ITERATIONS);
+            measureRollback(model, actions, WARMUP);
+            long rollback = measureRollback(model, actions, ITERATIONS);
+            System.out.println(world.level.tileWidth + "\t" + clone / ITERATIONS + "\t" + advance / ITERATIONS
+                    + "\t" + copy / ITERATIONS + "\t" + rollback / ITERATIONS);
+        }
+    }
+}
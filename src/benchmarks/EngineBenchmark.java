@@ -0,0 +1,240 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Locale;
+
+import agents.robinBaumgarten.AStarTree;
+import agents.robinBaumgarten.ParallelAStarTree;
+import engine.core.MarioForwardModel;
+import engine.core.MarioGame;
+import engine.core.MarioLevel;
+import engine.core.MarioLevelTemplate;
+import engine.core.MarioTimer;
+import engine.core.MarioWorld;
+import engine.helper.GameStatus;
+import engine.helper.MarioActions;
+import engine.helper.TileFeature;
+
+/**
+ * Measure the simulation hot paths and print the results as JSON so runs of two versions
+ * can be compared. Every benchmark is warmed up then run for a fixed time and reports the
+ * average time of one operation.
+ * <p>
+ * Arguments: the output file (prints to the standard output if missing) and the measure
+ * time of each benchmark in milliseconds.
+ */
+public class EngineBenchmark {
+    /**
+     * a generated level with a lot of enemies
+     */
+    private static final String DENSE_LEVEL = "levels/hopper/lvl-351.txt";
+
+    private interface Operation {
+        void run(int iteration);
+    }
+
+    private static class Result {
+        private final String name;
+        private final String level;
+        private final long operations;
+        private final double nsPerOperation;
+
+        Result(String name, String level, long operations, double nsPerOperation) {
+            this.name = name;
+            this.level = level;
+            this.operations = operations;
+            this.nsPerOperation = nsPerOperation;
+        }
+
+        String toJson() {
+            return String.format(Locale.ROOT, "{\"benchmark\": \"%s\", \"level\": \"%s\", \"operations\": %d, "
+                            + "\"nsPerOp\": %.1f, \"opsPerSec\": %.1f}", this.name, this.level, this.operations,
+                    this.nsPerOperation, 1e9 / this.nsPerOperation);
+        }
+    }
+
+    /**
+     * results are added to this value so the JIT can't drop the measured code
+     */
+    private static long sink;
+
+    private final long measureNanos;
+    private final ArrayList<Result> results;
+
+    private EngineBenchmark(long measureMillis) {
+        this.measureNanos = measureMillis * 1000000L;
+        this.results = new ArrayList<>();
+    }
+
+    private void measure(String name, String level, Operation operation) {
+        this.runFor(operation, this.measureNanos / 2);
+        long[] measured = this.runFor(operation, this.measureNanos);
+        this.results.add(new Result(name, level, measured[0], (double) measured[1] / measured[0]));
+        System.err.println(this.results.get(this.results.size() - 1).toJson());
+    }
+
+    /**
+     * Run batches of an operation until some time passed
+     *
+     * @return the number of operations and the time they took in nanoseconds
+     */
+    private long[] runFor(Operation operation, long nanos) {
+        long operations = 0;
+        int batch = 1;
+        long start = System.nanoTime();
+        long elapsed = 0;
+        while (elapsed < nanos) {
+            for (int i = 0; i < batch; i++) {
+                operation.run(i);
+            }
+            operations += batch;
+            elapsed = System.nanoTime() - start;
+            if (batch < 1 << 16) {
+                batch *= 2;
+            }
+        }
+        return new long[]{operations, elapsed};
+    }
+
+    private static MarioForwardModel createModel(String level) {
+        MarioWorld world = new MarioWorld(null);
+        world.visuals = false;
+        world.initializeLevel(level, 200000);
+        world.update(new boolean[MarioActions.numberOfActions()]);
+        return new MarioForwardModel(world);
+    }
+
+    /**
+     * Actions that run right and jump in bursts, used to move mario into the level
+     */
+    private static boolean[] getActions(int tick) {
+        boolean[] actions = new boolean[MarioActions.numberOfActions()];
+        actions[MarioActions.RIGHT.getValue()] = true;
+        actions[MarioActions.SPEED.getValue()] = true;
+        actions[MarioActions.JUMP.getValue()] = tick % 24 < 12;
+        return actions;
+    }
+
+    private static MarioForwardModel advanceInto(MarioForwardModel model, int ticks) {
+        for (int t = 0; t < ticks && model.getGameStatus() == GameStatus.RUNNING; t++) {
+            model.advance(getActions(t));
+        }
+        return model;
+    }
+
+    private void measureLevel(String name, String level) {
+        MarioForwardModel start = createModel(level);
+        MarioForwardModel model = advanceInto(start.clone(), 40);
+        this.measure("clone", name, i -> sink += model.clone().getRemainingTime());
+
+        boolean[][] actions = new boolean[24][];
+        for (int i = 0; i < actions.length; i++) {
+            actions[i] = getActions(i);
+        }
+        MarioForwardModel running = start.clone();
+        this.measure("advance", name, i -> {
+            if (running.getGameStatus() != GameStatus.RUNNING) {
+                running.copyFrom(start);
+            }
+            running.advance(actions[i % actions.length]);
+            sink += running.getRemainingTime();
+        });
+
+        this.measure("parse", name, i -> sink += new MarioLevel(level, false).tileWidth);
+        MarioLevelTemplate template = new MarioLevelTemplate(level);
+        this.measure("createLevel", name, i -> sink += template.createLevel(false).tileWidth);
+    }
+
+    private void measureObservations(String name, String level) {
+        MarioForwardModel model = advanceInto(createModel(level), 40);
+        int[] flat = new int[model.obsGridWidth * model.obsGridHeight];
+        float[] enemies = new float[300];
+        this.measure("getScreenCompleteObservation", name, i -> sink += model.getScreenCompleteObservation()[0][0]);
+        this.measure("getScreenEnemiesObservation", name, i -> sink += model.getScreenEnemiesObservation()[0][0]);
+        this.measure("getScreenSceneObservation", name, i -> sink += model.getScreenSceneObservation()[0][0]);
+        this.measure("getMarioCompleteObservation", name, i -> sink += model.getMarioCompleteObservation()[0][0]);
+        this.measure("getMarioEnemiesObservation", name, i -> sink += model.getMarioEnemiesObservation()[0][0]);
+        this.measure("getMarioSceneObservation", name, i -> sink += model.getMarioSceneObservation()[0][0]);
+        this.measure("getMarioCompleteObservation(buffer)", name,
+                i -> sink += model.getMarioCompleteObservation(1, 0, flat)[0]);
+        this.measure("getMarioFloatPos", name, i -> sink += (long) model.getMarioFloatPos()[0]);
+        this.measure("getEnemiesFloatPos", name, i -> sink += model.getEnemiesFloatPos().length);
+        this.measure("getEnemiesFloatPos(buffer)", name, i -> sink += model.getEnemiesFloatPos(enemies));
+    }
+
+    private void measureSearch(String name, String level) {
+        MarioForwardModel model = advanceInto(createModel(level), 40);
+        AStarTree tree = new AStarTree();
+        this.measure("AStarTree.optimise", name, i -> {
+            boolean[] action = tree.optimise(model.clone(), new MarioTimer(MarioGame.maxTime));
+            sink += action[MarioActions.RIGHT.getValue()] ? 1 : 0;
+        });
+    }
+
+    /**
+     * Play a level with the parallel search for doubling numbers of threads up to the number
+     * of cores and 32, the search is reported as the time of one node of one thread
+     */
+    private void measureParallelSearch(String name, String level) {
+        int maxThreads = Math.min(32, Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ParallelAStarTree tree = new ParallelAStarTree(threads);
+            MarioForwardModel model = createModel(level);
+            long start = System.nanoTime();
+            while (model.getGameStatus() == GameStatus.RUNNING && System.nanoTime() - start < this.measureNanos) {
+                model.advance(tree.optimise(model.clone(), new MarioTimer(MarioGame.maxTime)));
+            }
+            long nodes = 0;
+            for (int i = 0; i < threads; i++) {
+                nodes += tree.getExpandedNodes(i);
+            }
+            this.results.add(new Result("ParallelAStarTree.node threads=" + threads, name, nodes / threads,
+                    1e9 / tree.getNodesPerSecondPerThread()));
+            System.err.println(this.results.get(this.results.size() - 1).toJson());
+        }
+    }
+
+    private void print(PrintStream out) {
+        out.println("[");
+        for (int i = 0; i < this.results.size(); i++) {
+            out.println("  " + this.results.get(i).toJson() + (i < this.results.size() - 1 ? "," : ""));
+        }
+        out.println("]");
+    }
+
+    public static void main(String[] args) throws IOException {
+        long measureMillis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        EngineBenchmark benchmark = new EngineBenchmark(measureMillis);
+
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<String> levels = new ArrayList<>();
+        for (int i = 1; i <= 15; i++) {
+            names.add("original/lvl-" + i);
+            levels.add(new String(Files.readAllBytes(Paths.get("levels/original/lvl-" + i + ".txt"))));
+        }
+        names.add("dense");
+        levels.add(new String(Files.readAllBytes(Paths.get(DENSE_LEVEL))));
+
+        for (int i = 0; i < levels.size(); i++) {
+            benchmark.measureLevel(names.get(i), levels.get(i));
+        }
+        benchmark.measureObservations(names.get(0), levels.get(0));
+        benchmark.measureObservations("dense", levels.get(levels.size() - 1));
+        benchmark.measure("TileFeature.getTileType", "", i -> sink += TileFeature.getTileType(i & 255).size());
+        benchmark.measureSearch(names.get(0), levels.get(0));
+        benchmark.measureParallelSearch(names.get(0), levels.get(0));
+
+        if (args.length > 0) {
+            try (PrintStream out = new PrintStream(args[0])) {
+                benchmark.print(out);
+            }
+        } else {
+            benchmark.print(System.out);
+        }
+        System.err.println("sink " + sink);
+    }
+}
@@ -0,0 +1,205 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Random;
+
+import engine.core.MarioLevel;
+import engine.core.MarioWorld;
+import engine.helper.MarioActions;
+import engine.helper.SpriteType;
+
+/**
+ * Check that the padded tile accessors of MarioLevel return what the clamping accessors
+ * they replaced returned: columns left and right of the level repeat the edge columns,
+ * rows above and below the level are empty, and sprite types outside the level are NONE.
+ * The level goes through random writes, checkpoints and rollbacks of its world and writes
+ * on clones, and after each step every accessor is compared with a plain copy of the
+ * tiles over coordinates far outside the level.
+ * <p>
+ * Arguments: the level files (all the original levels if missing), then the number of
+ * rounds per level and the seed. Exits with status 1 on the first difference.
+ */
+public class LevelBorderCheck {
+    /**
+     * distance in tiles outside the level that is compared on every side
+     */
+    private static final int MARGIN = 40;
+    private static final int[] EXTREMES = {Integer.MIN_VALUE, -1000000, 1000000, Integer.MAX_VALUE};
+
+    private final Random random;
+    private long comparisons;
+
+    private LevelBorderCheck(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * getBlock as it was before the border: x clamped to the level and 0 above and below
+     */
+    private static int getClampedBlock(int[][] tiles, int xTile, int yTile) {
+        int width = tiles.length;
+        int height = tiles[0].length;
+        if (xTile < 0) {
+            xTile = 0;
+        }
+        if (xTile > width - 1) {
+            xTile = width - 1;
+        }
+        if (yTile < 0 || yTile > height - 1) {
+            return 0;
+        }
+        return tiles[xTile][yTile];
+    }
+
+    private static SpriteType getClampedSpriteType(SpriteType[][] sprites, int xTile, int yTile) {
+        if (xTile < 0 || yTile < 0 || xTile >= sprites.length || yTile >= sprites[0].length) {
+            return SpriteType.NONE;
+        }
+        return sprites[xTile][yTile];
+    }
+
+    private static int[][] copy(int[][] tiles) {
+        int[][] result = new int[tiles.length][];
+        for (int x = 0; x < tiles.length; x++) {
+            result[x] = tiles[x].clone();
+        }
+        return result;
+    }
+
+    /**
+     * Write random tiles on the level and its copy, some of them outside the level where
+     * setBlock ignores them and most of them on the edge columns that have border copies
+     */
+    private void write(MarioLevel level, int[][] tiles, int count) {
+        for (int i = 0; i < count; i++) {
+            int x;
+            switch (this.random.nextInt(4)) {
+                case 0:
+                    x = 0;
+                    break;
+                case 1:
+                    x = level.tileWidth - 1;
+                    break;
+                case 2:
+                    x = this.random.nextInt(level.tileWidth + 8) - 4;
+                    break;
+                default:
+                    x = this.random.nextInt(level.tileWidth);
+                    break;
+            }
+            int y = this.random.nextInt(level.tileHeight + 8) - 4;
+            int value = this.random.nextInt(256);
+            level.setBlock(x, y, value);
+            if (x >= 0 && y >= 0 && x < level.tileWidth && y < level.tileHeight) {
+                tiles[x][y] = value;
+            }
+        }
+    }
+
+    private void compare(String name, MarioLevel level, int[][] tiles, SpriteType[][] sprites) {
+        for (int x = -MARGIN; x < level.tileWidth + MARGIN; x++) {
+            for (int y = -MARGIN; y < level.tileHeight + MARGIN; y++) {
+                this.compare(name, level, tiles, sprites, x, y);
+            }
+        }
+        for (int extreme : EXTREMES) {
+            for (int y = -MARGIN; y < level.tileHeight + MARGIN; y++) {
+                this.compare(name, level, tiles, sprites, extreme, y);
+            }
+            for (int x = -MARGIN; x < level.tileWidth + MARGIN; x++) {
+                this.compare(name, level, tiles, sprites, x, extreme);
+            }
+        }
+    }
+
+    private void compare(String name, MarioLevel level, int[][] tiles, SpriteType[][] sprites, int x, int y) {
+        int expected = getClampedBlock(tiles, x, y);
+        if (level.getBlock(x, y) != expected) {
+            fail(name + " getBlock(" + x + ", " + y + ") is " + level.getBlock(x, y) + " instead of " + expected);
+        }
+        SpriteType expectedSprite = getClampedSpriteType(sprites, x, y);
+        if (level.getSpriteType(x, y) != expectedSprite) {
+            fail(name + " getSpriteType(" + x + ", " + y + ") is " + level.getSpriteType(x, y) + " instead of "
+                    + expectedSprite);
+        }
+        this.comparisons += 2;
+    }
+
+    private static void fail(String message) {
+        System.err.println("LevelBorderCheck FAILED " + message);
+        System.exit(1);
+    }
+
+    private void check(String name, String levelText, int rounds) {
+        MarioWorld world = new MarioWorld(null);
+        world.visuals = false;
+        world.initializeLevel(levelText, 200000);
+        // the checkpoints save mario, who only gets his actions on the first update
+        world.update(new boolean[MarioActions.numberOfActions()]);
+        MarioLevel level = world.level;
+
+        // the tiles inside the level are the reference, they only change through setBlock
+        int[][] tiles = new int[level.tileWidth][level.tileHeight];
+        SpriteType[][] sprites = new SpriteType[level.tileWidth][level.tileHeight];
+        for (int x = 0; x < level.tileWidth; x++) {
+            for (int y = 0; y < level.tileHeight; y++) {
+                tiles[x][y] = level.getBlock(x, y);
+                sprites[x][y] = level.getSpriteType(x, y);
+            }
+        }
+        this.compare(name, level, tiles, sprites);
+
+        ArrayList<Integer> marks = new ArrayList<>();
+        ArrayList<int[][]> saved = new ArrayList<>();
+        for (int round = 0; round < rounds; round++) {
+            int step = this.random.nextInt(4);
+            if (step == 0 || marks.isEmpty()) {
+                marks.add(world.checkpoint());
+                saved.add(copy(tiles));
+            } else if (step == 1) {
+                // going back to a checkpoint drops the ones taken after it
+                int index = this.random.nextInt(marks.size());
+                world.rollback(marks.get(index));
+                tiles = saved.get(index);
+                while (marks.size() > index) {
+                    marks.remove(marks.size() - 1);
+                    saved.remove(saved.size() - 1);
+                }
+            } else if (step == 2) {
+                MarioLevel clone = level.clone();
+                int[][] cloneTiles = copy(tiles);
+                this.write(clone, cloneTiles, 1 + this.random.nextInt(20));
+                this.compare(name + " clone", clone, cloneTiles, sprites);
+            }
+            this.write(level, tiles, 1 + this.random.nextInt(20));
+            this.compare(name, level, tiles, sprites);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        ArrayList<String> files = new ArrayList<>();
+        ArrayList<String> numbers = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.endsWith(".txt")) {
+                files.add(arg);
+            } else {
+                numbers.add(arg);
+            }
+        }
+        int rounds = numbers.size() > 0 ? Integer.parseInt(numbers.get(0)) : 200;
+        long seed = numbers.size() > 1 ? Long.parseLong(numbers.get(1)) : 42;
+        if (files.isEmpty()) {
+            for (int i = 1; i <= 15; i++) {
+                files.add("levels/original/lvl-" + i + ".txt");
+            }
+        }
+        LevelBorderCheck check = new LevelBorderCheck(seed);
+        for (String file : files) {
+            check.check(file, new String(Files.readAllBytes(Paths.get(file))), rounds);
+        }
+        System.err.println("LevelBorderCheck OK " + files.size() + " levels " + check.comparisons + " comparisons");
+    }
+}
@@ -0,0 +1,239 @@
+package engine.core;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Play every agent on every level without visuals using all the cores. Each job plays one
+ * agent on one level and runs on a work stealing pool where every worker thread keeps its
+ * own MarioGame. A result row is reported as soon as its job is done.
+ */
+public class MarioBatchRunner {
+    /**
+     * The outcome of one job
+     */
+    public static class Row {
+        /**
+         * column names of the rows printed by toString
+         */
+        public static final String HEADER = "agent\tlevel\trun\tstatus\tcompletion\tkills\tticks\tagentMs";
+
+        public final String agent;
+        public final String level;
+        public final int run;
+        /**
+         * the game status or ERROR if the game threw an exception
+         */
+        public final String status;
+        public final float completion;
+        public final int kills;
+        public final int ticks;
+        /**
+         * the time spent by the agent in getActions and initialize
+         */
+        public final double agentMs;
+
+        Row(String agent, String level, int run, String status, float completion, int kills, int ticks, double agentMs) {
+            this.agent = agent;
+            this.level = level;
+            this.run = run;
+            this.status = status;
+            this.completion = completion;
+            this.kills = kills;
+            this.ticks = ticks;
+            this.agentMs = agentMs;
+        }
+
+        @Override
+        public String toString() {
+            return this.agent + "\t" + this.level + "\t" + this.run + "\t" + this.status + "\t" + this.completion + "\t"
+                    + this.kills + "\t" + this.ticks + "\t" + String.format("%.3f", this.agentMs);
+        }
+    }
+
+    /**
+     * Wrap an agent to measure the time spent in its calls
+     */
+    private static class TimedAgent implements MarioAgent {
+        private final MarioAgent agent;
+        private long nanos;
+
+        TimedAgent(MarioAgent agent) {
+            this.agent = agent;
+        }
+
+        @Override
+        public void initialize(MarioForwardModel model, MarioTimer timer) {
+            long start = System.nanoTime();
+            this.agent.initialize(model, timer);
+            this.nanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public boolean[] getActions(MarioForwardModel model, MarioTimer timer) {
+            long start = System.nanoTime();
+            boolean[] actions = this.agent.getActions(model, timer);
+            this.nanos += System.nanoTime() - start;
+            return actions;
+        }
+
+        @Override
+        public String getAgentName() {
+            return this.agent.getAgentName();
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final ThreadLocal<MarioGame> games;
+    private final ArrayList<String> agentNames;
+    private final ArrayList<Supplier<MarioAgent>> agentFactories;
+
+    /**
+     * Create a batch runner that uses one worker per core
+     */
+    public MarioBatchRunner() {
+        this(new ForkJoinPool(Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Create a batch runner that uses a specific pool
+     *
+     * @param pool the pool that plays the games
+     */
+    public MarioBatchRunner(ForkJoinPool pool) {
+        this.pool = pool;
+        this.games = ThreadLocal.withInitial(MarioGame::new);
+        this.agentNames = new ArrayList<>();
+        this.agentFactories = new ArrayList<>();
+    }
+
+    /**
+     * Add an agent to evaluate. Every job creates its own agent so agents don't have to be
+     * thread safe.
+     *
+     * @param name    the name of the agent in the result rows
+     * @param factory creates a new agent for each job
+     */
+    public void addAgent(String name, Supplier<MarioAgent> factory) {
+        this.agentNames.add(name);
+        this.agentFactories.add(factory);
+    }
+
+    /**
+     * Find all the level files under a folder that match a glob
+     *
+     * @param root the folder to search in
+     * @param glob a glob on the path relative to root like "notch/*.txt" or "{ge,hopper}/*.txt"
+     * @return the matching files sorted by path
+     * @throws IOException if the folder can't be read
+     */
+    public static ArrayList<Path> findLevels(Path root, String glob) throws IOException {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        ArrayList<Path> levels = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(Files::isRegularFile).filter(p -> matcher.matches(root.relativize(p))).sorted()
+                    .forEach(levels::add);
+        }
+        return levels;
+    }
+
+    /**
+     * Play every agent on every level and report each result as soon as it is ready
+     *
+     * @param levels     the level files to play
+     * @param timer      number of seconds for each level, the same as in MarioGame.runGame
+     * @param marioState the initial state of mario
+     * @param runs       number of times each agent plays each level
+     * @param output     receives the rows from the worker threads, one call at a time
+     */
+    public void run(ArrayList<Path> levels, int timer, int marioState, int runs, Consumer<Row> output) {
+        ArrayList<ForkJoinTask<?>> jobs = new ArrayList<>();
+        for (int a = 0; a < this.agentFactories.size(); a++) {
+            for (Path level : levels) {
+                for (int run = 0; run < runs; run++) {
+                    String name = this.agentNames.get(a);
+                    Supplier<MarioAgent> factory = this.agentFactories.get(a);
+                    int currentRun = run;
+                    jobs.add(this.pool.submit(() -> {
+                        Row row = this.play(name, factory, level, timer, marioState, currentRun);
+                        synchronized (output) {
+                            output.accept(row);
+                        }
+                    }));
+                }
+            }
+        }
+        for (ForkJoinTask<?> job : jobs) {
+            job.join();
+        }
+    }
+
+    private Row play(String name, Supplier<MarioAgent> factory, Path level, int timer, int marioState, int run) {
+        TimedAgent agent = null;
+        try {
+            agent = new TimedAgent(factory.get());
+            String content = new String(Files.readAllBytes(level));
+            MarioResult result = this.games.get().runGame(agent, content, timer, marioState);
+            return new Row(name, level.toString(), run, result.getGameStatus().toString(),
+                    result.getCompletionPercentage(), result.getKillsTotal(), result.getAgentEvents().size(),
+                    agent.nanos / 1e6);
+        } catch (IOException | RuntimeException e) {
+            // the row only has the status, the reason of the failure goes to the error output
+            System.err.println(name + " on " + level + " run " + run + " failed: " + e);
+            return new Row(name, level.toString(), run, "ERROR", 0, 0, 0, agent == null ? 0 : agent.nanos / 1e6);
+        }
+    }
+
+    /**
+     * Stop the worker threads of the pool
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    private static Supplier<MarioAgent> getAgentFactory(String className) {
+        return () -> {
+            try {
+                return (MarioAgent) Class.forName(className).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("can't create agent " + className, e);
+            }
+        };
+    }
+
+    /**
+     * Run a batch from the command line and print the rows as tab separated values
+     *
+     * @param args the levels folder, a glob, the timer in seconds and one or more agent class names
+     * @throws IOException if the levels folder can't be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("usage: MarioBatchRunner <levels folder> <glob> <timer> <agent class>...");
+            return;
+        }
+        ArrayList<Path> levels = findLevels(Paths.get(args[0]), args[1]);
+        int timer = Integer.parseInt(args[2]);
+        MarioBatchRunner runner = new MarioBatchRunner();
+        for (int i = 3; i < args.length; i++) {
+            runner.addAgent(args[i], getAgentFactory(args[i]));
+        }
+        PrintStream out = System.out;
+        out.println(Row.HEADER);
+        long start = System.currentTimeMillis();
+        runner.run(levels, timer, 0, 1, out::println);
+        runner.shutdown();
+        System.err.println(levels.size() * (args.length - 3) + " games in " + (System.currentTimeMillis() - start) + " ms");
+    }
+}
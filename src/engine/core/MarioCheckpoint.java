@@ -0,0 +1,85 @@
+package engine.core;
+
+import java.util.ArrayList;
+
+import engine.helper.GameStatus;
+import engine.sprites.Mario;
+
+/**
+ * The saved state of a world at a checkpoint. Tiles are not stored here, the level keeps an
+ * undo log of tile writes instead and this only holds the position in that log. Objects are
+ * reused between checkpoints at the same depth so checkpointing does not allocate once warm.
+ */
+class MarioCheckpoint {
+    GameStatus gameStatus;
+    int pauseTimer;
+    int fireballsOnScreen;
+    int currentTimer;
+    int currentTick;
+    float cameraX;
+    float cameraY;
+    int coins;
+    int lives;
+    int undoMark;
+
+    Mario mario;
+    Mario marioState;
+    ArrayList<MarioSprite> sprites = new ArrayList<>();
+    ArrayList<MarioSprite> spriteStates = new ArrayList<>();
+    ArrayList<MarioEvent> lastFrameEvents = new ArrayList<>();
+    private ArrayList<MarioSprite> spareStates = new ArrayList<>();
+
+    /**
+     * Save the state of a sprite in a recycled sprite of the same class
+     *
+     * @param sprite the sprite to save
+     * @return a sprite holding the saved state, including whether the sprite is alive
+     */
+    MarioSprite saveSprite(MarioSprite sprite) {
+        MarioSprite state = null;
+        for (int i = this.spareStates.size() - 1; i >= 0; i--) {
+            if (this.spareStates.get(i).getClass() == sprite.getClass()) {
+                int last = this.spareStates.size() - 1;
+                state = this.spareStates.get(i);
+                this.spareStates.set(i, this.spareStates.get(last));
+                this.spareStates.remove(last);
+                break;
+            }
+        }
+        if (state == null) {
+            state = sprite.clone();
+        } else {
+            sprite.copyInto(state);
+        }
+        state.alive = sprite.alive;
+        return state;
+    }
+
+    /**
+     * Put back a saved sprite state into the sprite it came from
+     *
+     * @param state  the saved state
+     * @param sprite the sprite to restore
+     * @param world  the world the sprite belongs to
+     */
+    void restoreSprite(MarioSprite state, MarioSprite sprite, MarioWorld world) {
+        state.copyInto(sprite);
+        sprite.alive = state.alive;
+        sprite.world = world;
+    }
+
+    /**
+     * Forget the saved sprites and keep their objects for the next save
+     */
+    void clearSprites() {
+        this.spareStates.addAll(this.spriteStates);
+        if (this.marioState != null) {
+            this.spareStates.add(this.marioState);
+        }
+        this.sprites.clear();
+        this.spriteStates.clear();
+        this.lastFrameEvents.clear();
+        this.mario = null;
+        this.marioState = null;
+    }
+}
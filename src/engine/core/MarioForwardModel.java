@@ -1,6 +1,6 @@
 package engine.core;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 import engine.helper.EventType;
 import engine.helper.GameStatus;
@@ -64,7 +64,73 @@ public class MarioForwardModel {
     // Enemies Detail 2
     public static final int OBS_ENEMY = 1;
 
+    /**
+     * number of detail levels that have their own generalization
+     */
+    private static final int OBS_DETAILS = 3;
+    /**
+     * number of tile indices covered by the block generalization table
+     */
+    private static final int OBS_TILES = 256;
+    /**
+     * generalized values indexed by [detail][tile], the last row is used for unknown details
+     */
+    private static final int[][] blockGeneralization = new int[OBS_DETAILS + 1][OBS_TILES];
+    /**
+     * generalized values indexed by [detail][sprite type ordinal], the last row is used for unknown details
+     */
+    private static final int[][] spriteGeneralization = new int[OBS_DETAILS + 1][SpriteType.values().length];
+
+    static {
+        for (int detail = 0; detail <= OBS_DETAILS; detail++) {
+            int tableDetail = detail < OBS_DETAILS ? detail : -1;
+            for (int tile = 0; tile < OBS_TILES; tile++) {
+                blockGeneralization[detail][tile] = computeBlockValueGeneralization(tile, tableDetail);
+            }
+            for (SpriteType sprite : SpriteType.values()) {
+                spriteGeneralization[detail][sprite.ordinal()] = computeSpriteTypeGeneralization(sprite, tableDetail);
+            }
+        }
+    }
+
+    /**
+     * Get the generalized block values of a detail level
+     *
+     * @param detail the detail level of the scene
+     * @return the generalized value of each tile index below OBS_TILES, must not be changed
+     */
+    static int[] getBlockGeneralization(int detail) {
+        if (detail < 0 || detail >= OBS_DETAILS) {
+            return blockGeneralization[OBS_DETAILS];
+        }
+        return blockGeneralization[detail];
+    }
+
+    /**
+     * Get the generalized sprite values of a detail level
+     *
+     * @param detail the detail level of the enemies
+     * @return the generalized value of each sprite type indexed by its ordinal, must not be changed
+     */
+    static int[] getSpriteGeneralization(int detail) {
+        if (detail < 0 || detail >= OBS_DETAILS) {
+            return spriteGeneralization[OBS_DETAILS];
+        }
+        return spriteGeneralization[detail];
+    }
+
     public static int getSpriteTypeGeneralization(SpriteType sprite, int detail) {
+        return getSpriteGeneralization(detail)[sprite.ordinal()];
+    }
+
+    public static int getBlockValueGeneralization(int tile, int detail) {
+        if (tile < 0 || tile >= OBS_TILES) {
+            return computeBlockValueGeneralization(tile, detail);
+        }
+        return getBlockGeneralization(detail)[tile];
+    }
+
+    private static int computeSpriteTypeGeneralization(SpriteType sprite, int detail) {
         switch (detail) {
             case (0):
                 switch (sprite) {
@@ -114,7 +180,7 @@ public class MarioForwardModel {
         return OBS_UNDEF;
     }
 
-    public static int getBlockValueGeneralization(int tile, int detail) {
+    private static int computeBlockValueGeneralization(int tile, int detail) {
         if (tile == 0) {
             return OBS_NONE;
         }
@@ -216,6 +282,9 @@ public class MarioForwardModel {
     private int flowers;
     private int breakBlock;
 
+    // stats saved at each checkpoint
+    private int[] checkpointStats = new int[0];
+
     /**
      * Create a forward model object
      *
@@ -243,6 +312,64 @@ public class MarioForwardModel {
         return model;
     }
 
+    /**
+     * Overwrite this forward model with the state of another one. This gives the same
+     * state as clone() but reuses this model world, level storage and sprites.
+     *
+     * @param model the forward model to copy
+     */
+    public void copyFrom(MarioForwardModel model) {
+        model.world.copyInto(this.world);
+        this.fallKill = model.fallKill;
+        this.stompKill = model.stompKill;
+        this.fireKill = model.fireKill;
+        this.shellKill = model.shellKill;
+        this.mushrooms = model.mushrooms;
+        this.flowers = model.flowers;
+        this.breakBlock = model.breakBlock;
+    }
+
+    /**
+     * Save the current state so the model can come back to it after advancing. This is
+     * meant for depth first searches that go back right after trying a branch, it saves
+     * copying the whole world for every node.
+     *
+     * @return a mark that identifies the checkpoint for rollback
+     */
+    public int checkpoint() {
+        int mark = this.world.checkpoint();
+        if (this.checkpointStats.length < (mark + 1) * 7) {
+            this.checkpointStats = Arrays.copyOf(this.checkpointStats, (mark + 1) * 14);
+        }
+        int index = mark * 7;
+        this.checkpointStats[index] = this.fallKill;
+        this.checkpointStats[index + 1] = this.stompKill;
+        this.checkpointStats[index + 2] = this.fireKill;
+        this.checkpointStats[index + 3] = this.shellKill;
+        this.checkpointStats[index + 4] = this.mushrooms;
+        this.checkpointStats[index + 5] = this.flowers;
+        this.checkpointStats[index + 6] = this.breakBlock;
+        return mark;
+    }
+
+    /**
+     * Restore the state saved by a checkpoint. The checkpoint and any checkpoint taken
+     * after it can't be used anymore.
+     *
+     * @param mark the value returned by checkpoint
+     */
+    public void rollback(int mark) {
+        this.world.rollback(mark);
+        int index = mark * 7;
+        this.fallKill = this.checkpointStats[index];
+        this.stompKill = this.checkpointStats[index + 1];
+        this.fireKill = this.checkpointStats[index + 2];
+        this.shellKill = this.checkpointStats[index + 3];
+        this.mushrooms = this.checkpointStats[index + 4];
+        this.flowers = this.checkpointStats[index + 5];
+        this.breakBlock = this.checkpointStats[index + 6];
+    }
+
     /**
      * Advance the forward model using the action array
      *
@@ -323,6 +450,36 @@ public class MarioForwardModel {
         return new float[]{this.world.mario.x, this.world.mario.y};
     }
 
+    /**
+     * Get mario position without allocating a new array
+     *
+     * @param pos array that receives the x and y position
+     * @return the pos array
+     */
+    public float[] getMarioFloatPos(float[] pos) {
+        pos[0] = this.world.mario.x;
+        pos[1] = this.world.mario.y;
+        return pos;
+    }
+
+    /**
+     * Get mario x position
+     *
+     * @return the actual mario x position in the current state
+     */
+    public float getMarioX() {
+        return this.world.mario.x;
+    }
+
+    /**
+     * Get mario y position
+     *
+     * @return the actual mario y position in the current state
+     */
+    public float getMarioY() {
+        return this.world.mario.y;
+    }
+
     /**
      * Get mario velocity
      *
@@ -332,6 +489,36 @@ public class MarioForwardModel {
         return new float[]{this.world.mario.xa, this.world.mario.ya};
     }
 
+    /**
+     * Get mario velocity without allocating a new array
+     *
+     * @param velocity array that receives the x and y velocity
+     * @return the velocity array
+     */
+    public float[] getMarioFloatVelocity(float[] velocity) {
+        velocity[0] = this.world.mario.xa;
+        velocity[1] = this.world.mario.ya;
+        return velocity;
+    }
+
+    /**
+     * Get mario horizontal velocity
+     *
+     * @return the actual mario x velocity in the current state
+     */
+    public float getMarioXVelocity() {
+        return this.world.mario.xa;
+    }
+
+    /**
+     * Get mario vertical velocity
+     *
+     * @return the actual mario y velocity in the current state
+     */
+    public float getMarioYVelocity() {
+        return this.world.mario.ya;
+    }
+
     /**
      * If mario can press the jump button while in the air to reach higher areas
      *
@@ -382,16 +569,31 @@ public class MarioForwardModel {
      * position for each enemy sprite
      */
     public float[] getEnemiesFloatPos() {
-        ArrayList<MarioSprite> enemiesAlive = this.world.getEnemies();
-        float[] enemyPos = new float[enemiesAlive.size() * 3];
-        for (int i = 0; i < enemiesAlive.size(); i++) {
-            enemyPos[3 * i] = enemiesAlive.get(i).type.getValue();
-            enemyPos[3 * i + 1] = enemiesAlive.get(i).x;
-            enemyPos[3 * i + 2] = enemiesAlive.get(i).y;
-        }
+        float[] enemyPos = new float[this.world.getEnemiesCount() * 3];
+        this.world.getEnemiesFloatPos(enemyPos);
         return enemyPos;
     }
 
+    /**
+     * Fill a buffer with the type, x position and y position of each enemy sprite. Only
+     * the enemies that fit in the buffer are written.
+     *
+     * @param enemyPos array that receives 3 floats for each enemy
+     * @return the number of enemies in the current state
+     */
+    public int getEnemiesFloatPos(float[] enemyPos) {
+        return this.world.getEnemiesFloatPos(enemyPos);
+    }
+
+    /**
+     * Get the number of enemies in the current state
+     *
+     * @return the number of enemies, a third of the length of getEnemiesFloatPos()
+     */
+    public int getNumEnemies() {
+        return this.world.getEnemiesCount();
+    }
+
     /**
      * get the number of enemies killed in the game
      *
@@ -491,6 +693,18 @@ public class MarioForwardModel {
         return new int[]{(int) ((this.world.mario.x - this.world.cameraX) / 16), (int) (this.world.mario.y / 16)};
     }
 
+    /**
+     * Get the tile location of mario with respect to the screen without allocating a new array
+     *
+     * @param pos array that receives the x and y tile location
+     * @return the pos array
+     */
+    public int[] getMarioScreenTilePos(int[] pos) {
+        pos[0] = (int) ((this.world.mario.x - this.world.cameraX) / 16);
+        pos[1] = (int) (this.world.mario.y / 16);
+        return pos;
+    }
+
     /**
      * The current screen status as a 2D tile grid around the center of screen with
      * scene detail value 1 and enemy detail value of 0
@@ -573,6 +787,39 @@ public class MarioForwardModel {
                 sceneDetail, enemyDetail);
     }
 
+    /**
+     * The current screen status as a 2D tile grid around the center of screen,
+     * written in a caller owned grid
+     *
+     * @param sceneDetail the detail level of the scene: 0 all detail, 1 less detailed, 2
+     *                    binary detail
+     * @param enemyDetail the detail level of the current enemies: 0 all details, 1 less
+     *                    detailed, 2 binary detail
+     * @param obs         grid of obsGridWidth by obsGridHeight values that receives the observation
+     * @return the obs grid
+     */
+    public int[][] getScreenCompleteObservation(int sceneDetail, int enemyDetail, int[][] obs) {
+        return this.world.getMergedObservation(this.world.cameraX + MarioGame.width / 2, MarioGame.height / 2,
+                sceneDetail, enemyDetail, obs);
+    }
+
+    /**
+     * The current screen status as a 2D tile grid around the center of screen,
+     * written in a flat caller owned array where the value of
+     * the tile at (x, y) is stored at x * obsGridHeight + y
+     *
+     * @param sceneDetail the detail level of the scene: 0 all detail, 1 less detailed, 2
+     *                    binary detail
+     * @param enemyDetail the detail level of the current enemies: 0 all details, 1 less
+     *                    detailed, 2 binary detail
+     * @param obs         array of at least obsGridWidth * obsGridHeight values that receives the observation
+     * @return the obs array
+     */
+    public int[] getScreenCompleteObservation(int sceneDetail, int enemyDetail, int[] obs) {
+        return this.world.getMergedObservation(this.world.cameraX + MarioGame.width / 2, MarioGame.height / 2,
+                sceneDetail, enemyDetail, obs);
+    }
+
     /**
      * The current enemies on the screen as a 2D tile grid around the center of
      * screen
@@ -587,6 +834,33 @@ public class MarioForwardModel {
         return this.world.getEnemiesObservation(this.world.cameraX + MarioGame.width / 2, MarioGame.height / 2, detail);
     }
 
+    /**
+     * The current enemies on the screen as a 2D tile grid around the center of
+     * screen, written in a caller owned grid
+     *
+     * @param detail the detail level: 0 all details, 1 less detailed, 2 binary detail
+     * @param obs    grid of obsGridWidth by obsGridHeight values that receives the observation
+     * @return the obs grid
+     */
+    public int[][] getScreenEnemiesObservation(int detail, int[][] obs) {
+        return this.world.getEnemiesObservation(this.world.cameraX + MarioGame.width / 2, MarioGame.height / 2,
+                detail, obs);
+    }
+
+    /**
+     * The current enemies on the screen as a 2D tile grid around the center of
+     * screen, written in a flat caller owned array where the value of
+     * the tile at (x, y) is stored at x * obsGridHeight + y
+     *
+     * @param detail the detail level: 0 all details, 1 less detailed, 2 binary detail
+     * @param obs    array of at least obsGridWidth * obsGridHeight values that receives the observation
+     * @return the obs array
+     */
+    public int[] getScreenEnemiesObservation(int detail, int[] obs) {
+        return this.world.getEnemiesObservation(this.world.cameraX + MarioGame.width / 2, MarioGame.height / 2,
+                detail, obs);
+    }
+
     /**
      * The current objects (not enemies) on the screen as a 2D tile grid around the
      * center of screen
@@ -601,6 +875,33 @@ public class MarioForwardModel {
         return this.world.getSceneObservation(this.world.cameraX + MarioGame.width / 2, MarioGame.height / 2, detail);
     }
 
+    /**
+     * The current objects (not enemies) on the screen as a 2D tile grid around the
+     * center of screen, written in a caller owned grid
+     *
+     * @param detail the detail level: 0 all details, 1 less detailed, 2 binary detail
+     * @param obs    grid of obsGridWidth by obsGridHeight values that receives the observation
+     * @return the obs grid
+     */
+    public int[][] getScreenSceneObservation(int detail, int[][] obs) {
+        return this.world.getSceneObservation(this.world.cameraX + MarioGame.width / 2, MarioGame.height / 2,
+                detail, obs);
+    }
+
+    /**
+     * The current objects (not enemies) on the screen as a 2D tile grid around the
+     * center of screen, written in a flat caller owned array where the value of
+     * the tile at (x, y) is stored at x * obsGridHeight + y
+     *
+     * @param detail the detail level: 0 all details, 1 less detailed, 2 binary detail
+     * @param obs    array of at least obsGridWidth * obsGridHeight values that receives the observation
+     * @return the obs array
+     */
+    public int[] getScreenSceneObservation(int detail, int[] obs) {
+        return this.world.getSceneObservation(this.world.cameraX + MarioGame.width / 2, MarioGame.height / 2,
+                detail, obs);
+    }
+
     /**
      * The current screen status as a 2D tile grid around mario
      *
@@ -614,6 +915,36 @@ public class MarioForwardModel {
         return this.world.getMergedObservation(this.world.mario.x, this.world.mario.y, sceneDetail, enemyDetail);
     }
 
+    /**
+     * The current screen status as a 2D tile grid around mario, written in a caller owned grid
+     *
+     * @param sceneDetail the detail level of the scene: 0 all detail, 1 less detailed, 2
+     *                    binary detail
+     * @param enemyDetail the detail level of the current enemies: 0 all details, 1 less
+     *                    detailed, 2 binary detail
+     * @param obs         grid of obsGridWidth by obsGridHeight values that receives the observation
+     * @return the obs grid
+     */
+    public int[][] getMarioCompleteObservation(int sceneDetail, int enemyDetail, int[][] obs) {
+        return this.world.getMergedObservation(this.world.mario.x, this.world.mario.y, sceneDetail, enemyDetail, obs);
+    }
+
+    /**
+     * The current screen status as a 2D tile grid around mario, written in a
+     * flat caller owned array where the value of
+     * the tile at (x, y) is stored at x * obsGridHeight + y
+     *
+     * @param sceneDetail the detail level of the scene: 0 all detail, 1 less detailed, 2
+     *                    binary detail
+     * @param enemyDetail the detail level of the current enemies: 0 all details, 1 less
+     *                    detailed, 2 binary detail
+     * @param obs         array of at least obsGridWidth * obsGridHeight values that receives the observation
+     * @return the obs array
+     */
+    public int[] getMarioCompleteObservation(int sceneDetail, int enemyDetail, int[] obs) {
+        return this.world.getMergedObservation(this.world.mario.x, this.world.mario.y, sceneDetail, enemyDetail, obs);
+    }
+
     /**
      * The current enemies on the screen as a 2D tile grid around mario
      *
@@ -627,6 +958,31 @@ public class MarioForwardModel {
         return this.world.getEnemiesObservation(this.world.mario.x, this.world.mario.y, detail);
     }
 
+    /**
+     * The current enemies on the screen as a 2D tile grid around mario, written
+     * in a caller owned grid
+     *
+     * @param detail the detail level: 0 all details, 1 less detailed, 2 binary detail
+     * @param obs    grid of obsGridWidth by obsGridHeight values that receives the observation
+     * @return the obs grid
+     */
+    public int[][] getMarioEnemiesObservation(int detail, int[][] obs) {
+        return this.world.getEnemiesObservation(this.world.mario.x, this.world.mario.y, detail, obs);
+    }
+
+    /**
+     * The current enemies on the screen as a 2D tile grid around mario, written
+     * in a flat caller owned array where the value of
+     * the tile at (x, y) is stored at x * obsGridHeight + y
+     *
+     * @param detail the detail level: 0 all details, 1 less detailed, 2 binary detail
+     * @param obs    array of at least obsGridWidth * obsGridHeight values that receives the observation
+     * @return the obs array
+     */
+    public int[] getMarioEnemiesObservation(int detail, int[] obs) {
+        return this.world.getEnemiesObservation(this.world.mario.x, this.world.mario.y, detail, obs);
+    }
+
     /**
      * The current objects (not enemies) on the screen as a 2D tile grid around
      * mario
@@ -640,4 +996,29 @@ public class MarioForwardModel {
     public int[][] getMarioSceneObservation(int detail) {
         return this.world.getSceneObservation(this.world.mario.x, this.world.mario.y, detail);
     }
+
+    /**
+     * The current objects (not enemies) on the screen as a 2D tile grid around
+     * mario, written in a caller owned grid
+     *
+     * @param detail the detail level: 0 all details, 1 less detailed, 2 binary detail
+     * @param obs    grid of obsGridWidth by obsGridHeight values that receives the observation
+     * @return the obs grid
+     */
+    public int[][] getMarioSceneObservation(int detail, int[][] obs) {
+        return this.world.getSceneObservation(this.world.mario.x, this.world.mario.y, detail, obs);
+    }
+
+    /**
+     * The current objects (not enemies) on the screen as a 2D tile grid around
+     * mario, written in a flat caller owned array where the value of
+     * the tile at (x, y) is stored at x * obsGridHeight + y
+     *
+     * @param detail the detail level: 0 all details, 1 less detailed, 2 binary detail
+     * @param obs    array of at least obsGridWidth * obsGridHeight values that receives the observation
+     * @return the obs array
+     */
+    public int[] getMarioSceneObservation(int detail, int[] obs) {
+        return this.world.getSceneObservation(this.world.mario.x, this.world.mario.y, detail, obs);
+    }
 }
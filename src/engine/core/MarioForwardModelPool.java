@@ -0,0 +1,52 @@
+package engine.core;
+
+import java.util.ArrayList;
+
+/**
+ * A pool of forward models that agents can borrow copies from instead of cloning. Released
+ * models are overwritten in place by the next borrow, so a search that releases the nodes
+ * it is done with runs with almost no allocation.
+ */
+public class MarioForwardModelPool {
+    private ArrayList<MarioForwardModel> freeModels;
+
+    /**
+     * Create an empty pool
+     */
+    public MarioForwardModelPool() {
+        this.freeModels = new ArrayList<>();
+    }
+
+    /**
+     * Get a copy of a forward model, reusing a released model if there is any
+     *
+     * @param model the forward model to copy
+     * @return a forward model with the same state as model.clone()
+     */
+    public MarioForwardModel borrow(MarioForwardModel model) {
+        if (this.freeModels.isEmpty()) {
+            return model.clone();
+        }
+        MarioForwardModel copy = this.freeModels.remove(this.freeModels.size() - 1);
+        copy.copyFrom(model);
+        return copy;
+    }
+
+    /**
+     * Give back a forward model so it can be reused, the model must not be used after that
+     *
+     * @param model the forward model that is not needed anymore
+     */
+    public void release(MarioForwardModel model) {
+        this.freeModels.add(model);
+    }
+
+    /**
+     * Get the number of models waiting to be reused
+     *
+     * @return number of free models in the pool
+     */
+    public int getFreeModels() {
+        return this.freeModels.size();
+    }
+}
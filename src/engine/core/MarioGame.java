@@ -46,6 +46,11 @@ public class MarioGame {
      */
     public boolean pause = false;
 
+    /**
+     * collect the time spent in each phase of the world update, see MarioResult.getTickStats
+     */
+    public boolean profile = false;
+
     /**
      * events that kills the player when it happens only care about type and param
      */
@@ -204,6 +209,35 @@ public class MarioGame {
      * @return statistics about the current game
      */
     public MarioResult runGame(MarioAgent agent, String level, int timer, int marioState, boolean visuals, int fps, float scale) {
+        return this.runGame(agent, MarioLevelTemplate.get(level), timer, marioState, visuals, fps, scale);
+    }
+
+    /**
+     * Run a parsed level with a certain agent without visuals
+     *
+     * @param agent      the current AI agent used to play the game
+     * @param level      the parsed level, from MarioLevelTemplate.get or MarioLevelModel.createTemplate
+     * @param timer      number of ticks for that level to be played. Setting timer to anything &lt;=0 will make the time infinite
+     * @param marioState the initial state that mario appears in. 0 small mario, 1 large mario, and 2 fire mario.
+     * @return statistics about the current game
+     */
+    public MarioResult runGame(MarioAgent agent, MarioLevelTemplate level, int timer, int marioState) {
+        return this.runGame(agent, level, timer, marioState, false, 0, 2);
+    }
+
+    /**
+     * Run a parsed level with a certain agent
+     *
+     * @param agent      the current AI agent used to play the game
+     * @param level      the parsed level, from MarioLevelTemplate.get or MarioLevelModel.createTemplate
+     * @param timer      number of ticks for that level to be played. Setting timer to anything &lt;=0 will make the time infinite
+     * @param marioState the initial state that mario appears in. 0 small mario, 1 large mario, and 2 fire mario.
+     * @param visuals    show the game visuals if it is true and false otherwise
+     * @param fps        the number of frames per second that the update function is following
+     * @param scale      the screen scale, that scale value is multiplied by the actual width and height
+     * @return statistics about the current game
+     */
+    public MarioResult runGame(MarioAgent agent, MarioLevelTemplate level, int timer, int marioState, boolean visuals, int fps, float scale) {
         if (visuals) {
             this.window = new JFrame("Mario AI Framework");
             this.render = new MarioRender(scale);
@@ -218,9 +252,10 @@ public class MarioGame {
         return this.gameLoop(level, timer, marioState, visuals, fps);
     }
 
-    private MarioResult gameLoop(String level, int timer, int marioState, boolean visual, int fps) {
+    private MarioResult gameLoop(MarioLevelTemplate level, int timer, int marioState, boolean visual, int fps) {
         this.world = new MarioWorld(this.killEvents);
         this.world.visuals = visual;
+        this.world.setTickStatsEnabled(this.profile);
         this.world.initializeLevel(level, 1000 * timer);
         if (visual) {
             this.world.initializeVisuals(this.render.getGraphicsConfiguration());
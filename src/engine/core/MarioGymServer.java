@@ -0,0 +1,374 @@
+package engine.core;
+
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+import engine.helper.GameStatus;
+import engine.helper.MarioActions;
+
+/**
+ * Serve mario environments to a learner running in another process over a local socket
+ * or the standard input and output. Every connection has its own environments.
+ * <p>
+ * All the numbers are little endian. A request starts with a one byte command followed by
+ * its arguments, and every request except QUIT gets a response that starts with a status
+ * byte: STATUS_OK followed by the result, or STATUS_ERROR followed by a short length and
+ * an UTF-8 message. An observation is obsGridWidth * obsGridHeight shorts where the tile at
+ * (x, y) is at x * obsGridHeight + y. A step result is a float reward, a status byte with
+ * the GameStatus ordinal after the step and an observation.
+ * <ul>
+ * <li>CREATE int level: create an environment on a level, returns int id and an observation</li>
+ * <li>RESET int id, int level: start a level again, returns an observation</li>
+ * <li>STEP int count, count times (int id, byte actions): advance environments by one tick,
+ * bit i of actions is the button with MarioActions value i, returns count step results. The
+ * count can't be more than the number of environment ids given out so far</li>
+ * <li>CLONE int id: copy an environment, returns the int id of the copy</li>
+ * <li>OBSERVE int id, byte sceneDetail, byte enemyDetail: returns an observation</li>
+ * <li>CLOSE int id: remove an environment, returns nothing</li>
+ * <li>QUIT: close the connection</li>
+ * </ul>
+ * An environment that ended stays in its final state until it is reset.
+ */
+public class MarioGymServer {
+    public static final byte CREATE = 1;
+    public static final byte RESET = 2;
+    public static final byte STEP = 3;
+    public static final byte CLONE = 4;
+    public static final byte OBSERVE = 5;
+    public static final byte CLOSE = 6;
+    public static final byte QUIT = 0;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;
+
+    /**
+     * the reward added when mario reaches the flag
+     */
+    public float winReward = 10;
+    /**
+     * the reward added when mario dies or the time runs out
+     */
+    public float loseReward = -10;
+    /**
+     * the detail level of the scene in the step observations
+     */
+    public int sceneDetail = 1;
+    /**
+     * the detail level of the enemies in the step observations
+     */
+    public int enemyDetail = 0;
+
+    private static final int OBSERVATION_SIZE = MarioGame.tileWidth * MarioGame.tileHeight;
+    private static final int STEP_RESULT_SIZE = 4 + 1 + 2 * OBSERVATION_SIZE;
+    private static final int STEP_REQUEST_SIZE = 4 + 1;
+
+    private final ReadableByteChannel input;
+    private final WritableByteChannel output;
+    private final ArrayList<String> levels;
+    private final int timer;
+    private final int marioState;
+
+    private final MarioWorld[] initialWorlds;
+    private final ArrayList<MarioWorld> worlds;
+    private final ArrayList<Integer> freeIds;
+    private float[] lastX;
+
+    private ByteBuffer request;
+    private ByteBuffer response;
+    private final boolean[] actions;
+    private final int[] observation;
+
+    /**
+     * Create a server for one connection
+     *
+     * @param input      the channel the requests come from
+     * @param output     the channel that receives the responses
+     * @param levels     the levels that can be played, a level argument is an index in that list
+     * @param timer      number of seconds for each level, the same as in MarioGame.runGame
+     * @param marioState the initial state that mario appears in. 0 small mario, 1 large mario, and 2 fire mario.
+     */
+    public MarioGymServer(ReadableByteChannel input, WritableByteChannel output, ArrayList<String> levels,
+                          int timer, int marioState) {
+        this.input = input;
+        this.output = output;
+        this.levels = levels;
+        this.timer = timer;
+        this.marioState = marioState;
+        this.initialWorlds = new MarioWorld[levels.size()];
+        this.worlds = new ArrayList<>();
+        this.freeIds = new ArrayList<>();
+        this.lastX = new float[16];
+        this.request = ByteBuffer.allocateDirect(1024).order(ByteOrder.LITTLE_ENDIAN);
+        this.response = ByteBuffer.allocateDirect(1024 + STEP_RESULT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.actions = new boolean[MarioActions.numberOfActions()];
+        this.observation = new int[OBSERVATION_SIZE];
+    }
+
+    /**
+     * Answer requests until the client sends QUIT or closes the connection
+     *
+     * @throws IOException if the connection fails
+     */
+    public void serve() throws IOException {
+        while (true) {
+            byte command;
+            try {
+                command = this.read(1).get();
+            } catch (EOFException e) {
+                return;
+            }
+            if (command == QUIT) {
+                return;
+            }
+            this.response.clear();
+            this.response.put(STATUS_OK);
+            try {
+                this.answer(command);
+            } catch (IllegalArgumentException e) {
+                // the request was read completely, report the error and keep serving
+                this.response.clear();
+                byte[] message = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+                this.response.put(STATUS_ERROR).putShort((short) message.length).put(message);
+            }
+            this.response.flip();
+            while (this.response.hasRemaining()) {
+                this.output.write(this.response);
+            }
+        }
+    }
+
+    private void answer(byte command) throws IOException {
+        switch (command) {
+            case CREATE: {
+                int level = this.read(4).getInt();
+                int id = this.addWorld(this.getInitialWorld(level).clone());
+                this.response.putInt(id);
+                this.putObservation(this.worlds.get(id), this.sceneDetail, this.enemyDetail);
+                break;
+            }
+            case RESET: {
+                ByteBuffer args = this.read(8);
+                int id = args.getInt();
+                int level = args.getInt();
+                MarioWorld world = this.getWorld(id);
+                this.getInitialWorld(level).copyInto(world);
+                this.lastX[id] = world.mario.x;
+                this.putObservation(world, this.sceneDetail, this.enemyDetail);
+                break;
+            }
+            case STEP: {
+                int count = this.read(4).getInt();
+                if (count < 0) {
+                    throw new IllegalArgumentException("negative step count " + count);
+                }
+                if (count > this.worlds.size()) {
+                    // skip the batch so the next request is read from the right place
+                    this.skip((long) count * STEP_REQUEST_SIZE);
+                    throw new IllegalArgumentException("step count " + count + " is more than the "
+                            + this.worlds.size() + " environments");
+                }
+                this.ensureResponse(1 + count * STEP_RESULT_SIZE);
+                ByteBuffer args = this.read(count * STEP_REQUEST_SIZE);
+                // check all the ids first so a bad request doesn't advance part of the batch
+                for (int i = 0; i < count; i++) {
+                    this.getWorld(args.getInt(i * STEP_REQUEST_SIZE));
+                }
+                for (int i = 0; i < count; i++) {
+                    int id = args.getInt();
+                    byte buttons = args.get();
+                    this.step(id, buttons);
+                }
+                break;
+            }
+            case CLONE: {
+                int id = this.read(4).getInt();
+                int copy = this.addWorld(this.getWorld(id).clone());
+                this.lastX[copy] = this.lastX[id];
+                this.response.putInt(copy);
+                break;
+            }
+            case OBSERVE: {
+                ByteBuffer args = this.read(6);
+                int id = args.getInt();
+                byte scene = args.get();
+                byte enemy = args.get();
+                this.putObservation(this.getWorld(id), scene, enemy);
+                break;
+            }
+            case CLOSE: {
+                int id = this.read(4).getInt();
+                this.getWorld(id);
+                this.worlds.set(id, null);
+                this.freeIds.add(id);
+                break;
+            }
+            default:
+                throw new IOException("unknown command " + command);
+        }
+    }
+
+    private void step(int id, byte buttons) {
+        MarioWorld world = this.worlds.get(id);
+        for (int b = 0; b < this.actions.length; b++) {
+            this.actions[b] = (buttons & (1 << b)) != 0;
+        }
+        // a finished environment doesn't move and doesn't get the end reward again
+        boolean running = world.gameStatus == GameStatus.RUNNING;
+        world.update(this.actions);
+        this.response.putFloat(running ? MarioVecEnv.getReward(world, this.lastX[id], this.winReward, this.loseReward) : 0);
+        this.lastX[id] = world.mario.x;
+        this.response.put((byte) world.gameStatus.ordinal());
+        this.putObservation(world, this.sceneDetail, this.enemyDetail);
+    }
+
+    private void putObservation(MarioWorld world, int scene, int enemy) {
+        world.getMergedObservation(world.mario.x, world.mario.y, scene, enemy, this.observation);
+        for (int value : this.observation) {
+            this.response.putShort((short) value);
+        }
+    }
+
+    private MarioWorld getInitialWorld(int level) {
+        if (level < 0 || level >= this.levels.size()) {
+            throw new IllegalArgumentException("unknown level " + level);
+        }
+        if (this.initialWorlds[level] == null) {
+            this.initialWorlds[level] = MarioVecEnv.createInitialWorld(this.levels.get(level), this.timer, this.marioState);
+        }
+        return this.initialWorlds[level];
+    }
+
+    private MarioWorld getWorld(int id) {
+        if (id < 0 || id >= this.worlds.size() || this.worlds.get(id) == null) {
+            throw new IllegalArgumentException("unknown environment " + id);
+        }
+        return this.worlds.get(id);
+    }
+
+    private int addWorld(MarioWorld world) {
+        int id;
+        if (this.freeIds.isEmpty()) {
+            id = this.worlds.size();
+            this.worlds.add(world);
+        } else {
+            id = this.freeIds.remove(this.freeIds.size() - 1);
+            this.worlds.set(id, world);
+        }
+        if (id >= this.lastX.length) {
+            float[] lastX = new float[this.lastX.length * 2];
+            System.arraycopy(this.lastX, 0, lastX, 0, this.lastX.length);
+            this.lastX = lastX;
+        }
+        this.lastX[id] = world.mario.x;
+        return id;
+    }
+
+    private void ensureResponse(int size) {
+        if (this.response.capacity() < size) {
+            ByteBuffer response = ByteBuffer.allocateDirect(size * 2).order(ByteOrder.LITTLE_ENDIAN);
+            this.response.flip();
+            response.put(this.response);
+            this.response = response;
+        }
+    }
+
+    /**
+     * Read a number of bytes from the input
+     *
+     * @param size number of bytes to read
+     * @return the request buffer with the bytes between its position and limit
+     * @throws IOException if the input ends or fails before all the bytes arrive
+     */
+    private ByteBuffer read(int size) throws IOException {
+        if (this.request.capacity() < size) {
+            this.request = ByteBuffer.allocateDirect(size * 2).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        this.request.clear().limit(size);
+        while (this.request.hasRemaining()) {
+            if (this.input.read(this.request) < 0) {
+                throw new EOFException();
+            }
+        }
+        this.request.flip();
+        return this.request;
+    }
+
+    /**
+     * Read and drop a number of bytes from the input without holding them in memory
+     *
+     * @param size number of bytes to drop
+     * @throws IOException if the input ends or fails before all the bytes arrive
+     */
+    private void skip(long size) throws IOException {
+        while (size > 0) {
+            int chunk = (int) Math.min(size, this.request.capacity());
+            this.read(chunk);
+            size -= chunk;
+        }
+    }
+
+    /**
+     * Start a server on the standard input and output, a TCP port of the loopback address or
+     * an unix domain socket
+     *
+     * @param args the levels folder, a glob, the timer in seconds and one of --stdio, --port
+     *             number or --unix path
+     * @throws IOException if the server can't start
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("usage: MarioGymServer <levels folder> <glob> <timer> (--stdio | --port n | --unix path)");
+            return;
+        }
+        ArrayList<String> levels = new ArrayList<>();
+        for (Path p : MarioBatchRunner.findLevels(Paths.get(args[0]), args[1])) {
+            levels.add(new String(Files.readAllBytes(p)));
+        }
+        int timer = Integer.parseInt(args[2]);
+        System.err.println("serving " + levels.size() + " levels");
+        if (args[3].equals("--stdio")) {
+            new MarioGymServer(new FileInputStream(FileDescriptor.in).getChannel(),
+                    new FileOutputStream(FileDescriptor.out).getChannel(), levels, timer, 0).serve();
+            return;
+        }
+        ServerSocketChannel server;
+        if (args[3].equals("--unix")) {
+            Path path = Paths.get(args[4]);
+            Files.deleteIfExists(path);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(path));
+        } else {
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[4])));
+        }
+        while (true) {
+            SocketChannel client = server.accept();
+            Thread thread = new Thread(() -> {
+                try (SocketChannel channel = client) {
+                    new MarioGymServer(channel, channel, levels, timer, 0).serve();
+                } catch (IOException e) {
+                    System.err.println("connection closed: " + e.getMessage());
+                }
+            });
+            thread.start();
+        }
+    }
+}
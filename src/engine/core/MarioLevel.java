@@ -1,7 +1,7 @@
 package engine.core;
 
 import java.awt.Graphics;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 import engine.graphics.MarioImage;
 import engine.graphics.MarioTilemap;
@@ -10,6 +10,13 @@ import engine.helper.SpriteType;
 import engine.helper.TileFeature;
 
 public class MarioLevel {
+    private static final SpriteType[] spriteTypes = SpriteType.values();
+    /**
+     * number of tiles added on each side of the tile and sprite template grids. The columns
+     * repeat the level edges and the rows are empty, the same values the bounds checks of
+     * getBlock and getSpriteType used to return, so the tiles next to the level are plain loads.
+     */
+    private static final int BORDER = 2;
 
     public int width = MarioGame.width;
     public int tileWidth = MarioGame.width / 16;
@@ -18,42 +25,49 @@ public class MarioLevel {
     public int totalCoins = 0;
     public int marioTileX, marioTileY, exitTileX, exitTileY;
 
-    private int[][] levelTiles;
-    private SpriteType[][] spriteTemplates;
-    private int[][] lastSpawnTime;
+    private MarioTileLayer levelTiles;
+    private byte[] spriteTemplates;
+    private MarioTickLayer lastSpawnTime;
+    private MarioTileLayer spawnedSprites;
+    private boolean undoLogging;
+    private int[] undoLog;
+    private int undoSize;
     private MarioTilemap graphics;
     private MarioImage flag;
 
     public MarioLevel(String level, boolean visuals) {
-        if (level.trim().length() == 0) {
+        this(toMap(level), visuals);
+    }
+
+    /**
+     * Create a level from a grid of level characters without going through the level text,
+     * used to play the levels of a MarioLevelModel
+     *
+     * @param map     the level characters where map[x][y] is the tile (x, y), it is only read
+     * @param visuals true to create the images needed to render the level
+     */
+    public MarioLevel(char[][] map, boolean visuals) {
+        if (map.length == 0 || map[0].length == 0) {
             this.tileWidth = 0;
             this.width = 0;
             this.tileHeight = 0;
             this.height = 0;
             return;
         }
-        String[] lines = level.split("\\r?\\n");
-        this.tileWidth = lines[0].length();
+        this.tileWidth = map.length;
         this.width = this.tileWidth * 16;
-        this.tileHeight = lines.length;
+        this.tileHeight = map[0].length;
         this.height = this.tileHeight * 16;
 
-        this.levelTiles = new int[lines[0].length()][lines.length];
-        this.spriteTemplates = new SpriteType[lines[0].length()][lines.length];
-        this.lastSpawnTime = new int[lines[0].length()][lines.length];
-        for (int y = 0; y < lines.length; y++) {
-            for (int x = 0; x < lines[y].length(); x++) {
-                this.levelTiles[x][y] = 0;
-                this.spriteTemplates[x][y] = SpriteType.NONE;
-                this.lastSpawnTime[x][y] = -40;
-            }
-        }
+        // flat column major grids, the tile (x, y) is at x * tileHeight + y
+        byte[] tiles = new byte[this.tileWidth * this.tileHeight];
+        this.spriteTemplates = new byte[this.tileWidth * this.tileHeight];
 
         boolean marioLocInit = false;
         boolean exitLocInit = false;
-        for (int y = 0; y < lines.length; y++) {
-            for (int x = 0; x < lines[y].length(); x++) {
-                Character c = lines[y].charAt(x);
+        for (int y = 0; y < this.tileHeight; y++) {
+            for (int x = 0; x < this.tileWidth; x++) {
+                char c = map[x][y];
                 switch (c) {
                     case 'M':
                         this.marioTileX = x;
@@ -66,134 +80,134 @@ public class MarioLevel {
                         exitLocInit = true;
                         break;
                     case 'y':
-                        this.spriteTemplates[x][y] = SpriteType.SPIKY;
+                        this.spriteTemplates[x * this.tileHeight + y] = (byte) SpriteType.SPIKY.ordinal();
                         break;
                     case 'Y':
-                        this.spriteTemplates[x][y] = SpriteType.SPIKY_WINGED;
+                        this.spriteTemplates[x * this.tileHeight + y] = (byte) SpriteType.SPIKY_WINGED.ordinal();
                         break;
                     case 'E':
                     case 'g':
-                        this.spriteTemplates[x][y] = SpriteType.GOOMBA;
+                        this.spriteTemplates[x * this.tileHeight + y] = (byte) SpriteType.GOOMBA.ordinal();
                         break;
                     case 'G':
-                        this.spriteTemplates[x][y] = SpriteType.GOOMBA_WINGED;
+                        this.spriteTemplates[x * this.tileHeight + y] = (byte) SpriteType.GOOMBA_WINGED.ordinal();
                         break;
                     case 'k':
-                        this.spriteTemplates[x][y] = SpriteType.GREEN_KOOPA;
+                        this.spriteTemplates[x * this.tileHeight + y] = (byte) SpriteType.GREEN_KOOPA.ordinal();
                         break;
                     case 'K':
-                        this.spriteTemplates[x][y] = SpriteType.GREEN_KOOPA_WINGED;
+                        this.spriteTemplates[x * this.tileHeight + y] = (byte) SpriteType.GREEN_KOOPA_WINGED.ordinal();
                         break;
                     case 'r':
-                        this.spriteTemplates[x][y] = SpriteType.RED_KOOPA;
+                        this.spriteTemplates[x * this.tileHeight + y] = (byte) SpriteType.RED_KOOPA.ordinal();
                         break;
                     case 'R':
-                        this.spriteTemplates[x][y] = SpriteType.RED_KOOPA_WINGED;
+                        this.spriteTemplates[x * this.tileHeight + y] = (byte) SpriteType.RED_KOOPA_WINGED.ordinal();
                         break;
                     case 'X':
                         //floor
-                        this.levelTiles[x][y] = 1;
+                        tiles[x * this.tileHeight + y] = 1;
                         break;
                     case '#':
                         //pyramidBlock
-                        this.levelTiles[x][y] = 2;
+                        tiles[x * this.tileHeight + y] = 2;
                         break;
                     case '%':
                         //jump through block
                         int tempIndex = 0;
-                        if (x > 0 && lines[y].charAt(x - 1) == '%') {
+                        if (x > 0 && map[x - 1][y] == '%') {
                             tempIndex += 2;
                         }
-                        if (x < this.levelTiles.length - 1 && lines[y].charAt(x + 1) == '%') {
+                        if (x < this.tileWidth - 1 && map[x + 1][y] == '%') {
                             tempIndex += 1;
                         }
-                        this.levelTiles[x][y] = 43 + tempIndex;
+                        tiles[x * this.tileHeight + y] = (byte) (43 + tempIndex);
                         break;
                     case '|':
                         //background for jump through block
-                        this.levelTiles[x][y] = 47;
+                        tiles[x * this.tileHeight + y] = 47;
                         break;
                     case '*':
                         //bullet bill
                         tempIndex = 0;
-                        if (y > 0 && lines[y - 1].charAt(x) == '*') {
+                        if (y > 0 && map[x][y - 1] == '*') {
                             tempIndex += 1;
                         }
-                        if (y > 1 && lines[y - 2].charAt(x) == '*') {
+                        if (y > 1 && map[x][y - 2] == '*') {
                             tempIndex += 1;
                         }
-                        this.levelTiles[x][y] = 3 + tempIndex;
+                        tiles[x * this.tileHeight + y] = (byte) (3 + tempIndex);
                         break;
                     case 'B':
                         //bullet bill head
-                        this.levelTiles[x][y] = 3;
+                        tiles[x * this.tileHeight + y] = 3;
                         break;
                     case 'b':
                         //bullet bill neck and body
                         tempIndex = 0;
-                        if (y > 1 && lines[y - 2].charAt(x) == 'B') {
+                        if (y > 1 && map[x][y - 2] == 'B') {
                             tempIndex += 1;
                         }
-                        this.levelTiles[x][y] = 4 + tempIndex;
+                        tiles[x * this.tileHeight + y] = (byte) (4 + tempIndex);
                         break;
                     case '?':
                     case '@':
                         //mushroom question block
-                        this.levelTiles[x][y] = 8;
+                        tiles[x * this.tileHeight + y] = 8;
                         break;
                     case 'Q':
                     case '!':
                         //coin question block
                         this.totalCoins += 1;
-                        this.levelTiles[x][y] = 11;
+                        tiles[x * this.tileHeight + y] = 11;
                         break;
                     case '1':
                         //invisible 1 up block
-                        this.levelTiles[x][y] = 48;
+                        tiles[x * this.tileHeight + y] = 48;
                         break;
                     case '2':
                         //invisible coin block
                         this.totalCoins += 1;
-                        this.levelTiles[x][y] = 49;
+                        tiles[x * this.tileHeight + y] = 49;
                         break;
                     case 'D':
                         //used
-                        this.levelTiles[x][y] = 14;
+                        tiles[x * this.tileHeight + y] = 14;
                         break;
                     case 'S':
                         //normal block
-                        this.levelTiles[x][y] = 6;
+                        tiles[x * this.tileHeight + y] = 6;
                         break;
                     case 'C':
                         //coin block
                         this.totalCoins += 1;
-                        this.levelTiles[x][y] = 7;
+                        tiles[x * this.tileHeight + y] = 7;
                         break;
                     case 'U':
                         //mushroom block
-                        this.levelTiles[x][y] = 50;
+                        tiles[x * this.tileHeight + y] = 50;
                         break;
                     case 'L':
                         //1up block
-                        this.levelTiles[x][y] = 51;
+                        tiles[x * this.tileHeight + y] = 51;
                         break;
                     case 'o':
                         //coin
                         this.totalCoins += 1;
-                        this.levelTiles[x][y] = 15;
+                        tiles[x * this.tileHeight + y] = 15;
                         break;
                     case 't':
                         //empty Pipe
                         tempIndex = 0;
                         boolean singlePipe = false;
-                        if (x < lines[y].length() - 1 && Character.toLowerCase(lines[y].charAt(x + 1)) != 't' &&
-                                x > 0 && Character.toLowerCase(lines[y].charAt(x - 1)) != 't') {
+                        if (x < this.tileWidth - 1 && Character.toLowerCase(map[x + 1][y]) != 't' &&
+                                x > 0 && Character.toLowerCase(map[x - 1][y]) != 't') {
                             singlePipe = true;
                         }
-                        if (x > 0 && (this.levelTiles[x - 1][y] == 18 || this.levelTiles[x - 1][y] == 20)) {
+                        if (x > 0 && (tiles[(x - 1) * this.tileHeight + y] == 18 || tiles[(x - 1) * this.tileHeight + y] == 20)) {
                             tempIndex += 1;
                         }
-                        if (y > 0 && Character.toLowerCase(lines[y - 1].charAt(x)) == 't') {
+                        if (y > 0 && Character.toLowerCase(map[x][y - 1]) == 't') {
                             if (singlePipe) {
                                 tempIndex += 1;
                             } else {
@@ -201,20 +215,20 @@ public class MarioLevel {
                             }
                         }
                         if (singlePipe) {
-                            this.levelTiles[x][y] = 52 + tempIndex;
+                            tiles[x * this.tileHeight + y] = (byte) (52 + tempIndex);
                         } else {
-                            this.levelTiles[x][y] = 18 + tempIndex;
+                            tiles[x * this.tileHeight + y] = (byte) (18 + tempIndex);
                         }
                         break;
                     case 'T':
                         //flower pipe
                         tempIndex = 0;
-                        singlePipe = x < lines[y].length() - 1 && Character.toLowerCase(lines[y].charAt(x + 1)) != 't' &&
-                                x > 0 && Character.toLowerCase(lines[y].charAt(x - 1)) != 't';
-                        if (x > 0 && (this.levelTiles[x - 1][y] == 18 || this.levelTiles[x - 1][y] == 20)) {
+                        singlePipe = x < this.tileWidth - 1 && Character.toLowerCase(map[x + 1][y]) != 't' &&
+                                x > 0 && Character.toLowerCase(map[x - 1][y]) != 't';
+                        if (x > 0 && (tiles[(x - 1) * this.tileHeight + y] == 18 || tiles[(x - 1) * this.tileHeight + y] == 20)) {
                             tempIndex += 1;
                         }
-                        if (y > 0 && Character.toLowerCase(lines[y - 1].charAt(x)) == 't') {
+                        if (y > 0 && Character.toLowerCase(map[x][y - 1]) == 't') {
                             if (singlePipe) {
                                 tempIndex += 1;
                             } else {
@@ -222,52 +236,105 @@ public class MarioLevel {
                             }
                         }
                         if (singlePipe) {
-                            this.levelTiles[x][y] = 52 + tempIndex;
+                            tiles[x * this.tileHeight + y] = (byte) (52 + tempIndex);
                         } else {
                             if (tempIndex == 0) {
-                                this.spriteTemplates[x][y] = SpriteType.ENEMY_FLOWER;
+                                this.spriteTemplates[x * this.tileHeight + y] = (byte) SpriteType.ENEMY_FLOWER.ordinal();
                             }
-                            this.levelTiles[x][y] = 18 + tempIndex;
+                            tiles[x * this.tileHeight + y] = (byte) (18 + tempIndex);
                         }
                         break;
                     case '<':
                         //pipe top left
-                        this.levelTiles[x][y] = 18;
+                        tiles[x * this.tileHeight + y] = 18;
                         break;
                     case '>':
                         //pipe top right
-                        this.levelTiles[x][y] = 19;
+                        tiles[x * this.tileHeight + y] = 19;
                         break;
                     case '[':
                         //pipe body left
-                        this.levelTiles[x][y] = 20;
+                        tiles[x * this.tileHeight + y] = 20;
                         break;
                     case ']':
                         //pipe body right
-                        this.levelTiles[x][y] = 21;
+                        tiles[x * this.tileHeight + y] = 21;
                         break;
                 }
             }
         }
         if (!marioLocInit) {
             this.marioTileX = 0;
-            this.marioTileY = findFirstFloor(lines, this.marioTileX);
+            this.marioTileY = findFirstFloor(map, this.marioTileX);
         }
         if (!exitLocInit) {
-            this.exitTileX = lines[0].length() - 1;
-            this.exitTileY = findFirstFloor(lines, this.exitTileX);
+            this.exitTileX = this.tileWidth - 1;
+            this.exitTileY = findFirstFloor(map, this.exitTileX);
         }
         for (int y = this.exitTileY; y > Math.max(1, this.exitTileY - 11); y--) {
-            this.levelTiles[this.exitTileX][y] = 40;
+            tiles[this.exitTileX * this.tileHeight + y] = 40;
         }
-        this.levelTiles[this.exitTileX][Math.max(1, this.exitTileY - 11)] = 39;
+        tiles[this.exitTileX * this.tileHeight + Math.max(1, this.exitTileY - 11)] = 39;
+        this.levelTiles = new MarioTileLayer(this.tileWidth + 2 * BORDER, this.tileHeight + 2 * BORDER,
+                this.addBorder(tiles, true));
+        this.spriteTemplates = this.addBorder(this.spriteTemplates, false);
+        this.lastSpawnTime = new MarioTickLayer(this.tileWidth, this.tileHeight, -40);
+        this.spawnedSprites = new MarioTileLayer(this.tileWidth, this.tileHeight, 0);
 
         if (visuals) {
-            this.graphics = new MarioTilemap(Assets.level, this.levelTiles);
-            this.flag = new MarioImage(Assets.level, 41);
-            this.flag.width = 16;
-            this.flag.height = 16;
+            this.initializeGraphics();
+        }
+    }
+
+    /**
+     * Turn a level text into a grid of characters, rows shorter than the first one are
+     * filled with empty tiles
+     *
+     * @param level the level in the text format of the levels folder
+     * @return the grid where map[x][y] is the character of the tile (x, y)
+     */
+    private static char[][] toMap(String level) {
+        if (level.trim().length() == 0) {
+            return new char[0][0];
         }
+        String[] lines = level.split("\\r?\\n");
+        char[][] map = new char[lines[0].length()][lines.length];
+        for (int y = 0; y < lines.length; y++) {
+            for (int x = 0; x < map.length; x++) {
+                map[x][y] = x < lines[y].length() ? lines[y].charAt(x) : MarioLevelModel.EMPTY;
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Create the tile map and flag images used to render the level
+     */
+    void initializeGraphics() {
+        this.graphics = new MarioTilemap(Assets.level, this);
+        this.flag = new MarioImage(Assets.level, 41);
+        this.flag.width = 16;
+        this.flag.height = 16;
+    }
+
+    /**
+     * Surround a flat column major grid of the level size with BORDER tiles on each side
+     *
+     * @param values          the grid where the tile (x, y) is at x * tileHeight + y
+     * @param replicateColumns true to fill the side columns with the edge columns, false to leave them empty
+     * @return the padded grid where the tile (x, y) is at (x + BORDER) * (tileHeight + 2 * BORDER) + y + BORDER
+     */
+    private byte[] addBorder(byte[] values, boolean replicateColumns) {
+        int paddedHeight = this.tileHeight + 2 * BORDER;
+        byte[] padded = new byte[(this.tileWidth + 2 * BORDER) * paddedHeight];
+        for (int x = -BORDER; x < this.tileWidth + BORDER; x++) {
+            int source = Math.max(0, Math.min(x, this.tileWidth - 1));
+            if (source == x || replicateColumns) {
+                System.arraycopy(values, source * this.tileHeight, padded, (x + BORDER) * paddedHeight + BORDER,
+                        this.tileHeight);
+            }
+        }
+        return padded;
     }
 
     public MarioLevel clone() {
@@ -281,90 +348,235 @@ public class MarioLevel {
         level.marioTileY = this.marioTileY;
         level.exitTileX = this.exitTileX;
         level.exitTileY = this.exitTileY;
-        level.levelTiles = new int[this.levelTiles.length][this.levelTiles[0].length];
-        level.lastSpawnTime = new int[this.levelTiles.length][this.levelTiles[0].length];
-        for (int x = 0; x < level.levelTiles.length; x++) {
-            for (int y = 0; y < level.levelTiles[x].length; y++) {
-                level.levelTiles[x][y] = this.levelTiles[x][y];
-                level.lastSpawnTime[x][y] = this.lastSpawnTime[x][y];
-            }
-        }
+        level.levelTiles = this.levelTiles.share();
+        level.lastSpawnTime = this.lastSpawnTime.share();
+        level.spawnedSprites = this.spawnedSprites.share();
         level.spriteTemplates = this.spriteTemplates;
         return level;
     }
 
-    public boolean isBlocking(int xTile, int yTile, float xa, float ya) {
-        int block = this.getBlock(xTile, yTile);
-        ArrayList<TileFeature> features = TileFeature.getTileType(block);
-        boolean blocking = features.contains(TileFeature.BLOCK_ALL);
-        blocking |= (ya < 0) && features.contains(TileFeature.BLOCK_UPPER);
-        blocking |= (ya > 0) && features.contains(TileFeature.BLOCK_LOWER);
+    /**
+     * Overwrite another level so it ends up equal to a clone of this level without
+     * allocating new tile storage
+     *
+     * @param level the level object to overwrite
+     */
+    public void copyInto(MarioLevel level) {
+        level.width = this.width;
+        level.height = this.height;
+        level.tileWidth = this.tileWidth;
+        level.tileHeight = this.tileHeight;
+        level.totalCoins = this.totalCoins;
+        level.marioTileX = this.marioTileX;
+        level.marioTileY = this.marioTileY;
+        level.exitTileX = this.exitTileX;
+        level.exitTileY = this.exitTileY;
+        level.levelTiles = this.levelTiles.shareInto(level.levelTiles);
+        level.lastSpawnTime = this.lastSpawnTime.shareInto(level.lastSpawnTime);
+        level.spawnedSprites = this.spawnedSprites.shareInto(level.spawnedSprites);
+        level.spriteTemplates = this.spriteTemplates;
+        level.graphics = null;
+        level.flag = null;
+        level.stopUndoLog();
+    }
 
-        return blocking;
+    /**
+     * Start recording every tile write so it can be undone later
+     */
+    void startUndoLog() {
+        if (this.undoLog == null) {
+            this.undoLog = new int[256];
+        }
+        this.undoLogging = true;
     }
 
-    public int getBlock(int xTile, int yTile) {
-        if (xTile < 0) {
-            xTile = 0;
+    /**
+     * Stop recording tile writes and forget the recorded ones
+     */
+    void stopUndoLog() {
+        this.undoLogging = false;
+        this.undoSize = 0;
+    }
+
+    /**
+     * Get the current position in the undo log
+     *
+     * @return a mark that can be passed to undo
+     */
+    int getUndoMark() {
+        return this.undoSize;
+    }
+
+    /**
+     * Revert all the tile writes recorded after a mark, newest first
+     *
+     * @param mark a value returned by getUndoMark
+     */
+    void undo(int mark) {
+        while (this.undoSize > mark) {
+            this.undoSize -= 4;
+            int x = this.undoLog[this.undoSize + 1];
+            int y = this.undoLog[this.undoSize + 2];
+            int value = this.undoLog[this.undoSize + 3];
+            switch (this.undoLog[this.undoSize]) {
+                case 0:
+                    this.writeBlock(x, y, value);
+                    break;
+                case 1:
+                    this.lastSpawnTime.set(x, y, value);
+                    break;
+                case 2:
+                    this.spawnedSprites.set(x, y, value);
+                    break;
+            }
         }
-        if (xTile > this.tileWidth - 1) {
-            xTile = this.tileWidth - 1;
+    }
+
+    private void logUndo(int layer, int x, int y, int value) {
+        if (this.undoSize + 4 > this.undoLog.length) {
+            this.undoLog = Arrays.copyOf(this.undoLog, this.undoLog.length * 2);
+        }
+        this.undoLog[this.undoSize] = layer;
+        this.undoLog[this.undoSize + 1] = x;
+        this.undoLog[this.undoSize + 2] = y;
+        this.undoLog[this.undoSize + 3] = value;
+        this.undoSize += 4;
+    }
+
+    public boolean isBlocking(int xTile, int yTile, float xa, float ya) {
+        return TileFeature.isBlocking(this.getBlock(xTile, yTile), xa, ya);
+    }
+
+    public int getBlock(int xTile, int yTile) {
+        int x = xTile + BORDER;
+        int y = yTile + BORDER;
+        // one sign test for the four sides, only tiles past the border take the slow path
+        if ((x | y | (this.tileWidth + 2 * BORDER - 1 - x) | (this.tileHeight + 2 * BORDER - 1 - y)) < 0) {
+            return this.getBlockOutside(xTile, yTile);
         }
+        return this.levelTiles.get(x, y);
+    }
+
+    private int getBlockOutside(int xTile, int yTile) {
         if (yTile < 0 || yTile > this.tileHeight - 1) {
             return 0;
         }
-        return this.levelTiles[xTile][yTile];
+        return this.levelTiles.get(xTile < 0 ? BORDER : this.tileWidth - 1 + BORDER, yTile + BORDER);
     }
 
     public void setBlock(int xTile, int yTile, int index) {
         if (xTile < 0 || yTile < 0 || xTile > this.tileWidth - 1 || yTile > this.tileHeight - 1) {
             return;
         }
-        this.levelTiles[xTile][yTile] = index;
+        if (this.undoLogging) {
+            this.logUndo(0, xTile, yTile, this.levelTiles.get(xTile + BORDER, yTile + BORDER));
+        }
+        this.writeBlock(xTile, yTile, index);
+    }
+
+    /**
+     * Write a tile inside the level and keep the border columns equal to the edge columns
+     */
+    private void writeBlock(int xTile, int yTile, int index) {
+        this.levelTiles.set(xTile + BORDER, yTile + BORDER, index);
+        if (xTile == 0) {
+            for (int x = 0; x < BORDER; x++) {
+                this.levelTiles.set(x, yTile + BORDER, index);
+            }
+        }
+        if (xTile == this.tileWidth - 1) {
+            for (int x = this.tileWidth + BORDER; x < this.tileWidth + 2 * BORDER; x++) {
+                this.levelTiles.set(x, yTile + BORDER, index);
+            }
+        }
     }
 
     public void setShiftIndex(int xTile, int yTile, int shift) {
         if (this.graphics == null || xTile < 0 || yTile < 0 || xTile > this.tileWidth - 1 || yTile > this.tileHeight - 1) {
             return;
         }
-        this.graphics.moveShift[xTile][yTile] = shift;
+        this.graphics.moveShift[xTile * this.tileHeight + yTile] = shift;
     }
 
     public SpriteType getSpriteType(int xTile, int yTile) {
-        if (xTile < 0 || yTile < 0 || xTile >= this.tileWidth || yTile >= this.tileHeight) {
+        int x = xTile + BORDER;
+        int y = yTile + BORDER;
+        int paddedHeight = this.tileHeight + 2 * BORDER;
+        if ((x | y | (this.tileWidth + 2 * BORDER - 1 - x) | (paddedHeight - 1 - y)) < 0) {
             return SpriteType.NONE;
         }
-        return this.spriteTemplates[xTile][yTile];
+        return spriteTypes[this.spriteTemplates[x * paddedHeight + y]];
     }
 
     public int getLastSpawnTick(int xTile, int yTile) {
         if (xTile < 0 || yTile < 0 || xTile > this.tileWidth - 1 || yTile > this.tileHeight - 1) {
             return 0;
         }
-        return this.lastSpawnTime[xTile][yTile];
+        return this.lastSpawnTime.get(xTile, yTile);
     }
 
     public void setLastSpawnTick(int xTile, int yTile, int tick) {
         if (xTile < 0 || yTile < 0 || xTile > this.tileWidth - 1 || yTile > this.tileHeight - 1) {
             return;
         }
-        this.lastSpawnTime[xTile][yTile] = tick;
+        if (this.undoLogging) {
+            this.logUndo(1, xTile, yTile, this.lastSpawnTime.get(xTile, yTile));
+        }
+        this.lastSpawnTime.set(xTile, yTile, tick);
     }
 
     public String getSpriteCode(int xTile, int yTile) {
         return xTile + "_" + yTile + "_" + this.getSpriteType(xTile, yTile).getValue();
     }
 
+    /**
+     * Get the integer version of getSpriteCode, the spawn id of a sprite template tile
+     *
+     * @param xTile x tile position inside the level
+     * @param yTile y tile position inside the level
+     * @return the tile index used as spawn id
+     */
+    public int getSpawnId(int xTile, int yTile) {
+        return xTile * this.tileHeight + yTile;
+    }
+
+    /**
+     * Get how many sprites in the world came from a sprite template tile
+     *
+     * @param xTile x tile position inside the level
+     * @param yTile y tile position inside the level
+     * @return number of sprites with the spawn id of that tile
+     */
+    public int getSpawnedSprites(int xTile, int yTile) {
+        return this.spawnedSprites.get(xTile, yTile);
+    }
+
+    /**
+     * Update the number of sprites in the world that came from a sprite template tile
+     *
+     * @param spawnId the spawn id of the tile
+     * @param change  the amount to add to the counter
+     */
+    public void changeSpawnedSprites(int spawnId, int change) {
+        int xTile = spawnId / this.tileHeight;
+        int yTile = spawnId % this.tileHeight;
+        int count = this.spawnedSprites.get(xTile, yTile);
+        if (this.undoLogging) {
+            this.logUndo(2, xTile, yTile, count);
+        }
+        this.spawnedSprites.set(xTile, yTile, count + change);
+    }
+
     private boolean isSolid(char c) {
         return c == 'X' || c == '#' || c == '@' || c == '!' || c == 'B' || c == 'C' ||
                 c == 'Q' || c == '<' || c == '>' || c == '[' || c == ']' || c == '?' ||
                 c == 'S' || c == 'U' || c == 'D' || c == '%' || c == 't' || c == 'T';
     }
 
-    private int findFirstFloor(String[] lines, int x) {
+    private int findFirstFloor(char[][] map, int x) {
         boolean skipLines = true;
-        for (int i = lines.length - 1; i >= 0; i--) {
-            Character c = lines[i].charAt(x);
+        for (int i = map[x].length - 1; i >= 0; i--) {
+            char c = map[x][i];
             if (isSolid(c)) {
                 skipLines = false;
                 continue;
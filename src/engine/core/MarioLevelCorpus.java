@@ -0,0 +1,287 @@
+package engine.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A folder of levels packed into one indexed binary file that is memory mapped, so levels
+ * and parts of levels can be read without opening files or splitting text.
+ * <p>
+ * The file is little endian and has three parts:
+ * <ul>
+ * <li>a header with the magic number, the version and the number of levels</li>
+ * <li>an entry of ENTRY_SIZE bytes per level with the offset of its tiles, its width and
+ * height in tiles and the offset and length of its name</li>
+ * <li>the UTF-8 names followed by the tiles of every level, one byte per tile in rows from
+ * the top, the tile (x, y) is at y * width + x</li>
+ * </ul>
+ */
+public class MarioLevelCorpus {
+    /**
+     * the first four bytes of a corpus file
+     */
+    public static final int MAGIC = 0x43564C4D;
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int ENTRY_SIZE = 24;
+
+    private final ByteBuffer data;
+    private final int count;
+
+    private MarioLevelCorpus(ByteBuffer data) throws IOException {
+        this.data = data.asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        if (this.data.capacity() < HEADER_SIZE || this.data.getInt(0) != MAGIC) {
+            throw new IOException("not a level corpus");
+        }
+        if (this.data.getInt(4) != VERSION) {
+            throw new IOException("unsupported level corpus version " + this.data.getInt(4));
+        }
+        this.count = this.data.getInt(8);
+    }
+
+    /**
+     * Memory map a corpus file
+     *
+     * @param file a file written by pack
+     * @return the corpus backed by the mapped file
+     * @throws IOException if the file can't be read or is not a corpus
+     */
+    public static MarioLevelCorpus open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MarioLevelCorpus(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Pack the levels of a folder into a corpus kept in memory
+     *
+     * @param root the folder to search in
+     * @param glob a glob on the path relative to root, see MarioBatchRunner.findLevels
+     * @return the corpus of the matching levels sorted by path
+     * @throws IOException if a level can't be read or is not a rectangle of single byte tiles
+     */
+    public static MarioLevelCorpus pack(Path root, String glob) throws IOException {
+        return new MarioLevelCorpus(packLevels(root, MarioBatchRunner.findLevels(root, glob)));
+    }
+
+    /**
+     * Pack the levels of a folder into a corpus file
+     *
+     * @param root   the folder to search in
+     * @param glob   a glob on the path relative to root, see MarioBatchRunner.findLevels
+     * @param output the corpus file to write
+     * @return the number of packed levels
+     * @throws IOException if a level can't be read or the file can't be written
+     */
+    public static int pack(Path root, String glob, Path output) throws IOException {
+        ArrayList<Path> levels = MarioBatchRunner.findLevels(root, glob);
+        ByteBuffer data = packLevels(root, levels);
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+        return levels.size();
+    }
+
+    private static ByteBuffer packLevels(Path root, ArrayList<Path> levels) throws IOException {
+        ArrayList<byte[]> names = new ArrayList<>();
+        ArrayList<List<String>> lines = new ArrayList<>();
+        long size = HEADER_SIZE + (long) ENTRY_SIZE * levels.size();
+        for (Path level : levels) {
+            List<String> levelLines = Files.readAllLines(level, StandardCharsets.ISO_8859_1);
+            // blank lines at the end of a file are not rows of the level
+            while (!levelLines.isEmpty() && levelLines.get(levelLines.size() - 1).isEmpty()) {
+                levelLines.remove(levelLines.size() - 1);
+            }
+            if (levelLines.isEmpty()) {
+                throw new IOException("empty level " + level);
+            }
+            for (String line : levelLines) {
+                if (line.length() != levelLines.get(0).length()) {
+                    throw new IOException("the lines of " + level + " don't have the same length");
+                }
+            }
+            byte[] name = root.relativize(level).toString().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            lines.add(levelLines);
+            size += name.length + (long) levelLines.size() * levelLines.get(0).length();
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("the levels don't fit in a corpus of 2GB");
+        }
+
+        ByteBuffer data = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        data.putInt(MAGIC).putInt(VERSION).putInt(levels.size());
+        int position = HEADER_SIZE + ENTRY_SIZE * levels.size();
+        for (int i = 0; i < levels.size(); i++) {
+            data.position(position);
+            data.put(names.get(i));
+            int tilesOffset = data.position();
+            List<String> levelLines = lines.get(i);
+            for (String line : levelLines) {
+                data.put(line.getBytes(StandardCharsets.ISO_8859_1));
+            }
+            int entry = HEADER_SIZE + ENTRY_SIZE * i;
+            data.putLong(entry, tilesOffset);
+            data.putInt(entry + 8, levelLines.get(0).length());
+            data.putInt(entry + 12, levelLines.size());
+            data.putInt(entry + 16, position);
+            data.putInt(entry + 20, names.get(i).length);
+            position = data.position();
+        }
+        data.rewind();
+        return data;
+    }
+
+    /**
+     * Get the number of levels
+     *
+     * @return the number of levels in the corpus
+     */
+    public int size() {
+        return this.count;
+    }
+
+    private int getEntry(int index) {
+        if (index < 0 || index >= this.count) {
+            throw new IndexOutOfBoundsException("level " + index + " of a corpus of " + this.count);
+        }
+        return HEADER_SIZE + ENTRY_SIZE * index;
+    }
+
+    /**
+     * Get the path of a level relative to the packed folder
+     *
+     * @param index the index of the level
+     * @return the name of the level file
+     */
+    public String getName(int index) {
+        int entry = this.getEntry(index);
+        byte[] name = new byte[this.data.getInt(entry + 20)];
+        ByteBuffer buffer = this.data.duplicate();
+        buffer.position(this.data.getInt(entry + 16));
+        buffer.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the width of a level
+     *
+     * @param index the index of the level
+     * @return the width in tiles
+     */
+    public int getWidth(int index) {
+        return this.data.getInt(this.getEntry(index) + 8);
+    }
+
+    /**
+     * Get the height of a level
+     *
+     * @param index the index of the level
+     * @return the height in tiles
+     */
+    public int getHeight(int index) {
+        return this.data.getInt(this.getEntry(index) + 12);
+    }
+
+    /**
+     * Get the tiles of a level without copying them
+     *
+     * @param index the index of the level
+     * @return a read only view of the tiles where the tile (x, y) is at y * getWidth(index) + x
+     */
+    public ByteBuffer getTiles(int index) {
+        int entry = this.getEntry(index);
+        int offset = (int) this.data.getLong(entry);
+        int size = this.data.getInt(entry + 8) * this.data.getInt(entry + 12);
+        ByteBuffer buffer = this.data.duplicate();
+        buffer.position(offset).limit(offset + size);
+        return buffer.slice();
+    }
+
+    /**
+     * Get a tile of a level
+     *
+     * @param index the index of the level
+     * @param x     x tile position, must be inside the level
+     * @param y     y tile position, must be inside the level
+     * @return the character of the tile in the level text
+     */
+    public char getTile(int index, int x, int y) {
+        int entry = this.getEntry(index);
+        return (char) (this.data.get((int) this.data.getLong(entry) + y * this.data.getInt(entry + 8) + x) & 0xFF);
+    }
+
+    /**
+     * Get a level in the text format of the levels folder
+     *
+     * @param index the index of the level
+     * @return the level text with one line per row
+     */
+    public String getLevel(int index) {
+        int width = this.getWidth(index);
+        int height = this.getHeight(index);
+        ByteBuffer tiles = this.getTiles(index);
+        byte[] text = new byte[(width + 1) * height];
+        for (int y = 0; y < height; y++) {
+            tiles.get(text, y * (width + 1), width);
+            text[y * (width + 1) + width] = '\n';
+        }
+        return new String(text, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Copy a rectangle of a level into a level model, the same as
+     * MarioLevelModel.copyFromString with the text of the level but without building it
+     *
+     * @param index   the index of the level
+     * @param model   the model to write into
+     * @param targetX the x tile position in the model of the left of the rectangle
+     * @param targetY the y tile position in the model of the top of the rectangle
+     * @param sourceX the x tile position in the level of the left of the rectangle
+     * @param sourceY the y tile position in the level of the top of the rectangle
+     * @param width   the width of the rectangle, the source columns past the level repeat the last one
+     * @param height  the height of the rectangle, the source rows past the level repeat the last one
+     */
+    public void copyTo(int index, MarioLevelModel model, int targetX, int targetY, int sourceX, int sourceY,
+                       int width, int height) {
+        int entry = this.getEntry(index);
+        int offset = (int) this.data.getLong(entry);
+        int levelWidth = this.data.getInt(entry + 8);
+        int levelHeight = this.data.getInt(entry + 12);
+        for (int y = 0; y < height; y++) {
+            int row = offset + Math.min(y + sourceY, levelHeight - 1) * levelWidth;
+            for (int x = 0; x < width; x++) {
+                model.setBlock(x + targetX, y + targetY,
+                        (char) (this.data.get(row + Math.min(x + sourceX, levelWidth - 1)) & 0xFF));
+            }
+        }
+    }
+
+    /**
+     * Pack a folder of levels from the command line
+     *
+     * @param args the levels folder, a glob and the output file
+     * @throws IOException if a level can't be read or the file can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("usage: MarioLevelCorpus <levels folder> <glob> <output file>");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int count = pack(Paths.get(args[0]), args[1], Paths.get(args[2]));
+        System.err.println(count + " levels packed in " + (System.currentTimeMillis() - start) + " ms");
+    }
+}
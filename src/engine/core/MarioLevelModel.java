@@ -293,14 +293,23 @@ public class MarioLevelModel {
      * @return the map in form of string
      */
     public String getMap() {
-        String result = "";
+        StringBuilder result = new StringBuilder((map.length + 1) * map[0].length);
         for (int y = 0; y < map[0].length; y++) {
             for (int x = 0; x < map.length; x++) {
-                result += map[x][y];
+                result.append(map[x][y]);
             }
-            result += "\n";
+            result.append('\n');
         }
-        return result;
+        return result.toString();
+    }
+
+    /**
+     * parse the current map into a level template without building the level string
+     *
+     * @return a template that can start games on the current map
+     */
+    public MarioLevelTemplate createTemplate() {
+        return new MarioLevelTemplate(this.map);
     }
 
     /**
@@ -312,6 +321,6 @@ public class MarioLevelModel {
      */
     public MarioResult testALevelWithAgent(MarioAgent agent, int timer) {
         MarioGame game = new MarioGame();
-        return game.runGame(agent, this.getMap(), timer);
+        return game.runGame(agent, this.createTemplate(), timer, 0);
     }
 }
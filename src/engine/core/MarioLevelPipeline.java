@@ -0,0 +1,273 @@
+package engine.core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import engine.helper.GameStatus;
+
+/**
+ * Generate levels and keep the ones an agent can play. Every worker owns a level generator
+ * seeded from the pipeline seed and the worker index and handles every workers-th candidate,
+ * so the same seed and number of workers generate the same candidates. Each candidate is
+ * played without visuals straight from its level model and the accepted ones are written
+ * as soon as their test is done.
+ */
+public class MarioLevelPipeline {
+    /**
+     * The counters of a pipeline run
+     */
+    public static class Stats {
+        private long generated;
+        private long accepted;
+        private long generationNanos;
+        private long testNanos;
+        private long wallNanos;
+        private int workers;
+
+        private synchronized void add(long generationNanos, long testNanos, boolean accepted) {
+            this.generated += 1;
+            this.accepted += accepted ? 1 : 0;
+            this.generationNanos += generationNanos;
+            this.testNanos += testNanos;
+        }
+
+        public long getGenerated() {
+            return this.generated;
+        }
+
+        public long getAccepted() {
+            return this.accepted;
+        }
+
+        /**
+         * Get the time spent generating levels
+         *
+         * @return the time summed over all the workers in nanoseconds
+         */
+        public long getGenerationNanos() {
+            return this.generationNanos;
+        }
+
+        /**
+         * Get the time spent playing levels
+         *
+         * @return the time summed over all the workers in nanoseconds
+         */
+        public long getTestNanos() {
+            return this.testNanos;
+        }
+
+        public long getWallNanos() {
+            return this.wallNanos;
+        }
+
+        /**
+         * Get the generation speed of all the workers together
+         *
+         * @return the number of levels generated per second of generation time
+         */
+        public double getGenerationRate() {
+            return this.generationNanos == 0 ? 0 : this.generated * 1e9 * this.workers / this.generationNanos;
+        }
+
+        /**
+         * Get the test speed of all the workers together
+         *
+         * @return the number of levels played per second of test time
+         */
+        public double getTestRate() {
+            return this.testNanos == 0 ? 0 : this.generated * 1e9 * this.workers / this.testNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("generated %d accepted %d in %d ms, generation %.1f levels/s, test %.1f levels/s",
+                    this.generated, this.accepted, this.wallNanos / 1000000, this.getGenerationRate(),
+                    this.getTestRate());
+        }
+    }
+
+    /**
+     * the width of the generated levels in tiles
+     */
+    public int levelWidth = 150;
+    /**
+     * the height of the generated levels in tiles
+     */
+    public int levelHeight = 16;
+    /**
+     * the time given to the generator for each level in milliseconds
+     */
+    public long generatorTime = 5 * 60 * 60 * 1000;
+    /**
+     * number of seconds to play each level, the same as in MarioGame.runGame
+     */
+    public int timer = 20;
+    /**
+     * the initial state of mario in the tests
+     */
+    public int marioState = 0;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a pipeline that uses one worker per core
+     */
+    public MarioLevelPipeline() {
+        this(new ForkJoinPool(Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Create a pipeline that uses a specific pool, its parallelism is the number of workers
+     *
+     * @param pool the pool that generates and plays the levels
+     */
+    public MarioLevelPipeline(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Get acceptance criteria on the result of the test
+     *
+     * @param win           true to only accept levels the agent finished
+     * @param minCompletion the lowest accepted completion percentage between 0 and 1
+     * @param minJumps      the lowest accepted number of jumps
+     * @return a test that is true for the accepted results
+     */
+    public static Predicate<MarioResult> getCriteria(boolean win, float minCompletion, int minJumps) {
+        return result -> (!win || result.getGameStatus() == GameStatus.WIN)
+                && result.getCompletionPercentage() >= minCompletion && result.getNumJumps() >= minJumps;
+    }
+
+    /**
+     * Generate and test levels until a number of candidates was tried
+     *
+     * @param generators creates the generator of a worker from its seed
+     * @param agents     creates the agent of each test, agents don't have to be thread safe
+     * @param candidates the number of levels to generate
+     * @param seed       the seed of the run, worker i uses seed + i
+     * @param accept     the acceptance criteria on the test result
+     * @param output     the folder that receives the accepted levels as lvl-[candidate].txt, or null to not write them
+     * @return the counters of the run
+     * @throws IOException if the output folder can't be created or a level can't be written
+     */
+    public Stats run(LongFunction<MarioLevelGenerator> generators, Supplier<MarioAgent> agents, int candidates,
+                     long seed, Predicate<MarioResult> accept, Path output) throws IOException {
+        if (output != null) {
+            Files.createDirectories(output);
+        }
+        Stats stats = new Stats();
+        stats.workers = this.pool.getParallelism();
+        long start = System.nanoTime();
+        ArrayList<ForkJoinTask<?>> jobs = new ArrayList<>();
+        for (int w = 0; w < stats.workers; w++) {
+            int worker = w;
+            jobs.add(this.pool.submit(() -> this.work(generators.apply(seed + worker), agents, worker, stats.workers,
+                    candidates, accept, output, stats)));
+        }
+        try {
+            for (ForkJoinTask<?> job : jobs) {
+                job.join();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        stats.wallNanos = System.nanoTime() - start;
+        return stats;
+    }
+
+    private void work(MarioLevelGenerator generator, Supplier<MarioAgent> agents, int worker, int workers,
+                      int candidates, Predicate<MarioResult> accept, Path output, Stats stats) {
+        MarioGame game = new MarioGame();
+        MarioLevelModel model = new MarioLevelModel(this.levelWidth, this.levelHeight);
+        for (int candidate = worker; candidate < candidates; candidate += workers) {
+            long start = System.nanoTime();
+            String level = generator.getGeneratedLevel(model, new MarioTimer(this.generatorTime));
+            long generated = System.nanoTime();
+            // most generators return the text of their model, the test can then skip parsing
+            // it, the others are tested on the text they returned since that is what gets written
+            MarioLevelTemplate template = level.equals(model.getMap()) ? model.createTemplate()
+                    : new MarioLevelTemplate(level);
+            MarioResult result = game.runGame(agents.get(), template, this.timer, this.marioState);
+            long tested = System.nanoTime();
+            boolean accepted = accept.test(result);
+            if (accepted && output != null) {
+                try {
+                    Files.write(output.resolve("lvl-" + candidate + ".txt"), level.getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            stats.add(generated - start, tested - generated, accepted);
+        }
+    }
+
+    /**
+     * Stop the worker threads of the pool
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Create generators of a class that has a constructor taking a Random, or only a
+     * constructor without arguments in which case the seed is not used
+     */
+    private static LongFunction<MarioLevelGenerator> getGeneratorFactory(String className) {
+        return seed -> {
+            try {
+                Class<?> generatorClass = Class.forName(className);
+                try {
+                    return (MarioLevelGenerator) generatorClass.getConstructor(Random.class).newInstance(new Random(seed));
+                } catch (NoSuchMethodException e) {
+                    return (MarioLevelGenerator) generatorClass.getDeclaredConstructor().newInstance();
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("can't create generator " + className, e);
+            }
+        };
+    }
+
+    private static Supplier<MarioAgent> getAgentFactory(String className) {
+        return () -> {
+            try {
+                return (MarioAgent) Class.forName(className).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("can't create agent " + className, e);
+            }
+        };
+    }
+
+    /**
+     * Run a pipeline from the command line, the accepted levels are the ones the agent wins
+     *
+     * @param args the generator class, the agent class, the number of candidates, the output folder and optionally
+     *             the seed and the minimum number of jumps
+     * @throws IOException if the levels can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("usage: MarioLevelPipeline <generator class> <agent class> <candidates> <output folder> "
+                    + "[seed] [min jumps]");
+            return;
+        }
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 0;
+        int minJumps = args.length > 5 ? Integer.parseInt(args[5]) : 0;
+        MarioLevelPipeline pipeline = new MarioLevelPipeline();
+        Stats stats = pipeline.run(getGeneratorFactory(args[0]), getAgentFactory(args[1]), Integer.parseInt(args[2]),
+                seed, getCriteria(true, 1, minJumps), Paths.get(args[3]));
+        pipeline.shutdown();
+        System.err.println(stats);
+    }
+}
@@ -0,0 +1,120 @@
+package engine.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A level parsed once and used to start any number of games. The template keeps the tiles,
+ * the sprite templates, the start and exit positions and the number of coins as they are at
+ * the start of the level. The levels it creates share all of that and only copy the chunks
+ * of tiles they change.
+ */
+public class MarioLevelTemplate {
+    /**
+     * the number of templates kept by get, the least recently used one is dropped first
+     */
+    public static final int CACHE_SIZE = 64;
+
+    private static final LinkedHashMap<String, MarioLevelTemplate> cache =
+            new LinkedHashMap<String, MarioLevelTemplate>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, MarioLevelTemplate> eldest) {
+                    return this.size() > CACHE_SIZE;
+                }
+            };
+
+    private final MarioLevel level;
+
+    /**
+     * Parse a level
+     *
+     * @param level the level in the text format of the levels folder
+     */
+    public MarioLevelTemplate(String level) {
+        this.level = new MarioLevel(level, false);
+    }
+
+    /**
+     * Parse a grid of level characters, see MarioLevelModel.createTemplate
+     *
+     * @param map the level characters where map[x][y] is the tile (x, y), it is not kept
+     */
+    public MarioLevelTemplate(char[][] map) {
+        this.level = new MarioLevel(map, false);
+    }
+
+    /**
+     * Get the template of a level, parsing it only if it is not in the cache
+     *
+     * @param level the level in the text format of the levels folder
+     * @return the template shared by every caller with the same level content
+     */
+    public static MarioLevelTemplate get(String level) {
+        synchronized (cache) {
+            MarioLevelTemplate template = cache.get(level);
+            if (template != null) {
+                return template;
+            }
+        }
+        MarioLevelTemplate template = new MarioLevelTemplate(level);
+        synchronized (cache) {
+            MarioLevelTemplate other = cache.putIfAbsent(level, template);
+            return other != null ? other : template;
+        }
+    }
+
+    /**
+     * Drop all the templates kept by get
+     */
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Create a level in its initial state. It is synchronized because sharing the tile
+     * chunks marks them as not owned in the template, the template itself never writes.
+     *
+     * @param visuals true to create the images needed to render the level
+     * @return a new level that can be changed without affecting the template
+     */
+    public synchronized MarioLevel createLevel(boolean visuals) {
+        if (this.level.tileWidth == 0) {
+            // an empty level has no tile storage to share
+            return new MarioLevel("", visuals);
+        }
+        MarioLevel level = this.level.clone();
+        if (visuals) {
+            level.initializeGraphics();
+        }
+        return level;
+    }
+
+    /**
+     * Get the width of the level
+     *
+     * @return the width in tiles
+     */
+    public int getTileWidth() {
+        return this.level.tileWidth;
+    }
+
+    /**
+     * Get the height of the level
+     *
+     * @return the height in tiles
+     */
+    public int getTileHeight() {
+        return this.level.tileHeight;
+    }
+
+    /**
+     * Get the number of coins in the level
+     *
+     * @return the number of coin tiles and coin blocks
+     */
+    public int getTotalCoins() {
+        return this.level.totalCoins;
+    }
+}
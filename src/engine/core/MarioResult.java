@@ -67,6 +67,15 @@ public class MarioResult {
         return value;
     }
 
+    /**
+     * Get the time spent in each phase of the world update during the game
+     *
+     * @return the stats of every tick or null if the game was not run with profiling on
+     */
+    public MarioTickStats getTickStats() {
+        return this.world.getTickStats();
+    }
+
     /**
      * Get all the game events that happen in the game
      *
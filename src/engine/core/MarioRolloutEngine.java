@@ -0,0 +1,257 @@
+package engine.core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import engine.helper.GameStatus;
+
+/**
+ * Run many rollouts from the same forward model at the same time on a fork join pool.
+ * Every rollout gets its own copy of the root model that is only touched by one worker,
+ * and the outcome of each rollout is written to a flat float array with
+ * RESULT_SIZE values per rollout.
+ */
+public class MarioRolloutEngine {
+    /**
+     * Interface for the policies that choose the actions during a rollout
+     */
+    public interface Policy {
+        /**
+         * get mario actions for the next step of the rollout. A policy is only used by one
+         * rollout so it doesn't need to be thread safe.
+         *
+         * @param model the forward model of the rollout, it must not be advanced by the policy
+         * @param step  the number of steps done since the start of the rollout
+         * @return an array of the state of the buttons on the controller
+         */
+        boolean[] getActions(MarioForwardModel model, int step);
+    }
+
+    /**
+     * the game status ordinal at the end of the rollout
+     */
+    public static final int RESULT_STATUS = 0;
+    /**
+     * the completion percentage at the end of the rollout
+     */
+    public static final int RESULT_COMPLETION = 1;
+    /**
+     * mario x position at the end of the rollout
+     */
+    public static final int RESULT_MARIO_X = 2;
+    /**
+     * mario y position at the end of the rollout
+     */
+    public static final int RESULT_MARIO_Y = 3;
+    /**
+     * mario mode at the end of the rollout
+     */
+    public static final int RESULT_MARIO_MODE = 4;
+    /**
+     * the remaining time in the level at the end of the rollout
+     */
+    public static final int RESULT_REMAINING_TIME = 5;
+    /**
+     * the number of enemies killed during the whole game
+     */
+    public static final int RESULT_KILLS = 6;
+    /**
+     * the number of steps advanced, it is smaller than the requested steps when the game
+     * ended or the timer ran out
+     */
+    public static final int RESULT_STEPS = 7;
+    /**
+     * the number of values written for each rollout
+     */
+    public static final int RESULT_SIZE = 8;
+
+    /**
+     * number of steps between two checks of the timer
+     */
+    private static final int TIMER_CHECK_STEPS = 4;
+
+    private final ForkJoinPool pool;
+    private MarioForwardModel[] models;
+
+    /**
+     * Create a rollout engine that uses the common fork join pool
+     */
+    public MarioRolloutEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a rollout engine that uses a specific pool
+     *
+     * @param pool the pool that runs the rollouts
+     */
+    public MarioRolloutEngine(ForkJoinPool pool) {
+        this.pool = pool;
+        this.models = new MarioForwardModel[0];
+    }
+
+    /**
+     * Get the number of threads that can run rollouts at the same time
+     *
+     * @return the parallelism of the pool
+     */
+    public int getParallelism() {
+        return this.pool.getParallelism();
+    }
+
+    /**
+     * Advance a copy of the root model with each action sequence
+     *
+     * @param root      the model to start from, it is not changed
+     * @param sequences the action sequences indexed by [rollout][step]
+     * @param timer     rollouts stop advancing when the timer runs out, can be null
+     * @return the outcome of every rollout, RESULT_SIZE values per rollout
+     */
+    public float[] rollout(MarioForwardModel root, boolean[][][] sequences, MarioTimer timer) {
+        float[] results = new float[sequences.length * RESULT_SIZE];
+        this.rollout(root, sequences, timer, results);
+        return results;
+    }
+
+    /**
+     * Advance a copy of the root model with each action sequence
+     *
+     * @param root      the model to start from, it is not changed
+     * @param sequences the action sequences indexed by [rollout][step]
+     * @param timer     rollouts stop advancing when the timer runs out, can be null
+     * @param results   array that receives RESULT_SIZE values per rollout
+     */
+    public void rollout(MarioForwardModel root, boolean[][][] sequences, MarioTimer timer, float[] results) {
+        this.run(root, sequences, null, 0, sequences.length, timer, results);
+    }
+
+    /**
+     * Advance a copy of the root model with each policy for a number of steps
+     *
+     * @param root     the model to start from, it is not changed
+     * @param policies the policies to follow, one for each rollout
+     * @param steps    the maximum number of steps in each rollout
+     * @param timer    rollouts stop advancing when the timer runs out, can be null
+     * @return the outcome of every rollout, RESULT_SIZE values per rollout
+     */
+    public float[] rollout(MarioForwardModel root, Policy[] policies, int steps, MarioTimer timer) {
+        float[] results = new float[policies.length * RESULT_SIZE];
+        this.rollout(root, policies, steps, timer, results);
+        return results;
+    }
+
+    /**
+     * Advance a copy of the root model with each policy for a number of steps
+     *
+     * @param root     the model to start from, it is not changed
+     * @param policies the policies to follow, one for each rollout
+     * @param steps    the maximum number of steps in each rollout
+     * @param timer    rollouts stop advancing when the timer runs out, can be null
+     * @param results  array that receives RESULT_SIZE values per rollout
+     */
+    public void rollout(MarioForwardModel root, Policy[] policies, int steps, MarioTimer timer, float[] results) {
+        this.run(root, null, policies, steps, policies.length, timer, results);
+    }
+
+    /**
+     * Get the model used by a rollout of the last call. It holds the final state of that
+     * rollout until the next call to rollout.
+     *
+     * @param index the index of the rollout
+     * @return the forward model at the end of the rollout
+     */
+    public MarioForwardModel getModel(int index) {
+        return this.models[index];
+    }
+
+    private void run(MarioForwardModel root, boolean[][][] sequences, Policy[] policies, int steps, int count,
+                     MarioTimer timer, float[] results) {
+        if (results.length < count * RESULT_SIZE) {
+            throw new IllegalArgumentException("results array is too small for " + count + " rollouts");
+        }
+        // the copies are made on the calling thread as sharing the level chunks changes the root
+        if (this.models.length < count) {
+            MarioForwardModel[] models = new MarioForwardModel[count];
+            System.arraycopy(this.models, 0, models, 0, this.models.length);
+            this.models = models;
+        }
+        for (int i = 0; i < count; i++) {
+            if (this.models[i] == null) {
+                this.models[i] = root.clone();
+            } else {
+                this.models[i].copyFrom(root);
+            }
+        }
+        this.pool.invoke(new RolloutTask(this.models, sequences, policies, steps, timer, results, 0, count));
+    }
+
+    private static class RolloutTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final MarioForwardModel[] models;
+        private final boolean[][][] sequences;
+        private final Policy[] policies;
+        private final int steps;
+        private final MarioTimer timer;
+        private final float[] results;
+        private final int start;
+        private final int end;
+
+        RolloutTask(MarioForwardModel[] models, boolean[][][] sequences, Policy[] policies, int steps,
+                    MarioTimer timer, float[] results, int start, int end) {
+            this.models = models;
+            this.sequences = sequences;
+            this.policies = policies;
+            this.steps = steps;
+            this.timer = timer;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.start > 1) {
+                int middle = (this.start + this.end) >>> 1;
+                invokeAll(new RolloutTask(this.models, this.sequences, this.policies, this.steps, this.timer,
+                                this.results, this.start, middle),
+                        new RolloutTask(this.models, this.sequences, this.policies, this.steps, this.timer,
+                                this.results, middle, this.end));
+                return;
+            }
+            if (this.start < this.end) {
+                this.runRollout(this.start);
+            }
+        }
+
+        private boolean isTimeOver() {
+            return this.timer != null && this.timer.getRemainingTime() <= 0;
+        }
+
+        private void runRollout(int index) {
+            MarioForwardModel model = this.models[index];
+            int length = this.sequences != null ? this.sequences[index].length : this.steps;
+            int step = 0;
+            while (step < length && model.getGameStatus() == GameStatus.RUNNING) {
+                if (step % TIMER_CHECK_STEPS == 0 && this.isTimeOver()) {
+                    break;
+                }
+                if (this.sequences != null) {
+                    model.advance(this.sequences[index][step]);
+                } else {
+                    model.advance(this.policies[index].getActions(model, step));
+                }
+                step += 1;
+            }
+            int offset = index * RESULT_SIZE;
+            this.results[offset + RESULT_STATUS] = model.getGameStatus().ordinal();
+            this.results[offset + RESULT_COMPLETION] = model.getCompletionPercentage();
+            this.results[offset + RESULT_MARIO_X] = model.getMarioX();
+            this.results[offset + RESULT_MARIO_Y] = model.getMarioY();
+            this.results[offset + RESULT_MARIO_MODE] = model.getMarioMode();
+            this.results[offset + RESULT_REMAINING_TIME] = model.getRemainingTime();
+            this.results[offset + RESULT_KILLS] = model.getKillsTotal();
+            this.results[offset + RESULT_STEPS] = step;
+        }
+    }
+}
@@ -10,6 +10,7 @@ public abstract class MarioSprite {
     public SpriteType type = SpriteType.UNDEF;
 
     public String initialCode;
+    public int spawnId;
     public float x, y, xa, ya;
     public int width, height, facing;
     public boolean alive;
@@ -17,6 +18,7 @@ public abstract class MarioSprite {
 
     public MarioSprite(float x, float y, SpriteType type) {
         this.initialCode = "";
+        this.spawnId = -1;
         this.x = x;
         this.y = y;
         this.xa = 0;
@@ -33,6 +35,27 @@ public abstract class MarioSprite {
         return null;
     }
 
+    /**
+     * Overwrite a sprite of the same class so it ends up equal to a clone of this sprite.
+     * Used to recycle sprites instead of allocating new ones.
+     *
+     * @param target a sprite of the same class as this one
+     */
+    public void copyInto(MarioSprite target) {
+        target.type = this.type;
+        target.initialCode = this.initialCode;
+        target.spawnId = this.spawnId;
+        target.x = this.x;
+        target.y = this.y;
+        target.xa = this.xa;
+        target.ya = this.ya;
+        target.width = this.width;
+        target.height = this.height;
+        target.facing = this.facing;
+        target.alive = true;
+        target.world = null;
+    }
+
     public void added() {
 
     }
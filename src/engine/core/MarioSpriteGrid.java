@@ -0,0 +1,116 @@
+package engine.core;
+
+import java.util.ArrayList;
+
+/**
+ * A uniform grid of tile columns around the camera that buckets the world sprites by their
+ * x position. Queries return the indices of the sprites in the sprite list, in list order,
+ * so the collision checks that use it process sprites in the same order as a full scan.
+ */
+class MarioSpriteGrid {
+    /**
+     * extra columns kept on each side of the screen, sprites further than that get removed
+     */
+    private static final int MARGIN_COLUMNS = 8;
+    private static final int BUCKETS = MarioGame.tileWidth + 2 * MARGIN_COLUMNS;
+
+    private int originColumn;
+    private int size;
+    private boolean valid;
+    private int[] bucketStart = new int[BUCKETS + 1];
+    private int[] entries = new int[16];
+
+    /**
+     * Mark the grid as out of date so the next query rebuilds it
+     */
+    void invalidate() {
+        this.valid = false;
+    }
+
+    boolean isValid() {
+        return this.valid;
+    }
+
+    /**
+     * Bucket all the sprites in the list by their tile column
+     *
+     * @param sprites the world sprite list
+     * @param cameraX the current camera position
+     */
+    void build(ArrayList<MarioSprite> sprites, float cameraX) {
+        this.originColumn = (int) cameraX / 16 - MARGIN_COLUMNS;
+        this.size = sprites.size();
+        if (this.entries.length < this.size) {
+            this.entries = new int[this.size * 2];
+        }
+        int[] start = this.bucketStart;
+        for (int b = 0; b < start.length; b++) {
+            start[b] = 0;
+        }
+        for (int i = 0; i < this.size; i++) {
+            start[this.getBucket(sprites.get(i).x) + 1] += 1;
+        }
+        for (int b = 1; b < start.length; b++) {
+            start[b] += start[b - 1];
+        }
+        // stable counting sort so every bucket stays in list order
+        for (int i = 0; i < this.size; i++) {
+            int b = this.getBucket(sprites.get(i).x);
+            this.entries[start[b]++] = i;
+        }
+        for (int b = start.length - 1; b > 0; b--) {
+            start[b] = start[b - 1];
+        }
+        start[0] = 0;
+        this.valid = true;
+    }
+
+    private int getBucket(float x) {
+        int bucket = (int) (x / 16) - this.originColumn;
+        if (bucket < 0) {
+            return 0;
+        }
+        if (bucket >= BUCKETS) {
+            return BUCKETS - 1;
+        }
+        return bucket;
+    }
+
+    /**
+     * Make sure an index buffer is big enough to hold any query result
+     *
+     * @param buffer the current buffer
+     * @return the same buffer or a bigger one if needed
+     */
+    int[] fit(int[] buffer) {
+        if (buffer.length < this.size) {
+            return new int[this.size * 2];
+        }
+        return buffer;
+    }
+
+    /**
+     * Get all the sprites that might have their x position between two values. The result
+     * can contain sprites outside the range but never misses one inside it.
+     *
+     * @param minX   the smallest x value
+     * @param maxX   the biggest x value
+     * @param result buffer that receives the sprite list indices sorted ascending, it has to be fitted
+     * @return the number of indices written in the result
+     */
+    int query(float minX, float maxX, int[] result) {
+        int first = this.getBucket(minX);
+        int last = this.getBucket(maxX);
+        int count = 0;
+        for (int i = this.bucketStart[first]; i < this.bucketStart[last + 1]; i++) {
+            int value = this.entries[i];
+            int j = count++;
+            while (j > 0 && result[j - 1] > value) {
+                result[j] = result[j - 1];
+                j--;
+            }
+            result[j] = value;
+        }
+        return count;
+    }
+}
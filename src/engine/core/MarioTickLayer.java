@@ -0,0 +1,90 @@
+package engine.core;
+
+import java.util.Arrays;
+
+/**
+ * The int version of MarioTileLayer for values that don't fit in a byte like game ticks.
+ * It uses the same chunks and sharing as MarioTileLayer.
+ */
+class MarioTickLayer {
+    private static final int CHUNK_SHIFT = MarioTileLayer.CHUNK_SHIFT;
+    private static final int CHUNK_WIDTH = MarioTileLayer.CHUNK_WIDTH;
+    private static final int CHUNK_MASK = CHUNK_WIDTH - 1;
+
+    private final int width;
+    private final int height;
+    private int[][] chunks;
+    private boolean[] owned;
+
+    /**
+     * Create a layer where all the tiles have the same value
+     *
+     * @param width  the width of the layer in tiles
+     * @param height the height of the layer in tiles
+     * @param value  the initial value of every tile
+     */
+    MarioTickLayer(int width, int height, int value) {
+        this.width = width;
+        this.height = height;
+        this.chunks = new int[(width + CHUNK_MASK) >> CHUNK_SHIFT][];
+        this.owned = new boolean[this.chunks.length];
+        for (int c = 0; c < this.chunks.length; c++) {
+            this.chunks[c] = new int[CHUNK_WIDTH * height];
+            Arrays.fill(this.chunks[c], value);
+            this.owned[c] = true;
+        }
+    }
+
+    private MarioTickLayer(MarioTickLayer other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.chunks = other.chunks.clone();
+        this.owned = new boolean[this.chunks.length];
+    }
+
+    /**
+     * Create a copy of the layer that shares all the chunks with this one. Both layers
+     * lose the ownership of their chunks and copy them again on the next write.
+     *
+     * @return a layer with the same tile values
+     */
+    MarioTickLayer share() {
+        Arrays.fill(this.owned, false);
+        return new MarioTickLayer(this);
+    }
+
+    /**
+     * Make a layer share all the chunks of this one, reusing its arrays when the sizes match
+     *
+     * @param target the layer to overwrite, can be null
+     * @return the target layer or a new one if the target can't be reused
+     */
+    MarioTickLayer shareInto(MarioTickLayer target) {
+        if (target == null || target.width != this.width || target.height != this.height) {
+            return this.share();
+        }
+        Arrays.fill(this.owned, false);
+        System.arraycopy(this.chunks, 0, target.chunks, 0, this.chunks.length);
+        Arrays.fill(target.owned, false);
+        return target;
+    }
+
+    int get(int x, int y) {
+        return this.chunks[x >> CHUNK_SHIFT][(x & CHUNK_MASK) * this.height + y];
+    }
+
+    void set(int x, int y, int value) {
+        int c = x >> CHUNK_SHIFT;
+        int index = (x & CHUNK_MASK) * this.height + y;
+        int[] chunk = this.chunks[c];
+        if (chunk[index] == value) {
+            return;
+        }
+        if (!this.owned[c]) {
+            chunk = chunk.clone();
+            this.chunks[c] = chunk;
+            this.owned[c] = true;
+        }
+        chunk[index] = value;
+    }
+}
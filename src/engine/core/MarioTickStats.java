@@ -0,0 +1,178 @@
+package engine.core;
+
+/**
+ * Time spent and number of sprites handled in each phase of the world update. The world
+ * only collects them after calling MarioWorld.setTickStatsEnabled(true).
+ */
+public class MarioTickStats {
+    /**
+     * camera movement and removal of the sprites outside of the screen
+     */
+    public static final int CAMERA = 0;
+    /**
+     * scan of the screen tiles to spawn enemies and bullet bills
+     */
+    public static final int SPAWN = 1;
+    /**
+     * update of every sprite
+     */
+    public static final int UPDATE = 2;
+    /**
+     * collision check between mario and the sprites around him
+     */
+    public static final int COLLIDE = 3;
+    /**
+     * collision checks of the moving shells
+     */
+    public static final int SHELLS = 4;
+    /**
+     * collision checks of the fireballs
+     */
+    public static final int FIREBALLS = 5;
+    /**
+     * merge of the added and removed sprites into the sprite list
+     */
+    public static final int MERGE = 6;
+    /**
+     * check of the events that kill mario in a punishing forward model
+     */
+    public static final int KILL_EVENTS = 7;
+    /**
+     * the number of phases
+     */
+    public static final int PHASES = 8;
+
+    private static final String[] phaseNames = new String[]{"camera", "spawn", "update", "collide", "shells",
+            "fireballs", "merge", "killEvents"};
+
+    private long ticks;
+    private long[] nanos;
+    private long[] counts;
+
+    /**
+     * Create empty stats
+     */
+    public MarioTickStats() {
+        this.nanos = new long[PHASES];
+        this.counts = new long[PHASES];
+    }
+
+    /**
+     * Create a copy of the current stats
+     *
+     * @return stats with the same values that are not affected by future ticks
+     */
+    public MarioTickStats clone() {
+        MarioTickStats stats = new MarioTickStats();
+        stats.add(this);
+        return stats;
+    }
+
+    /**
+     * Add the values of other stats to these ones, used to sum the stats of many games
+     *
+     * @param stats the stats to add
+     */
+    public void add(MarioTickStats stats) {
+        this.ticks += stats.ticks;
+        for (int i = 0; i < PHASES; i++) {
+            this.nanos[i] += stats.nanos[i];
+            this.counts[i] += stats.counts[i];
+        }
+    }
+
+    /**
+     * Set all the values back to zero
+     */
+    public void reset() {
+        this.ticks = 0;
+        for (int i = 0; i < PHASES; i++) {
+            this.nanos[i] = 0;
+            this.counts[i] = 0;
+        }
+    }
+
+    void startTick() {
+        this.ticks += 1;
+    }
+
+    /**
+     * Record the end of a phase
+     *
+     * @param phase the phase that ended
+     * @param start the value of System.nanoTime() at the start of the phase
+     * @param count number of sprites handled by the phase
+     * @return the value of System.nanoTime() at the end of the phase
+     */
+    long endPhase(int phase, long start, int count) {
+        long time = System.nanoTime();
+        this.nanos[phase] += time - start;
+        this.counts[phase] += count;
+        return time;
+    }
+
+    /**
+     * Get the name of a phase
+     *
+     * @param phase one of the phase constants
+     * @return a short name for the phase
+     */
+    public static String getPhaseName(int phase) {
+        return phaseNames[phase];
+    }
+
+    /**
+     * Get the number of updates that went through all the phases
+     *
+     * @return number of ticks recorded
+     */
+    public long getTicks() {
+        return this.ticks;
+    }
+
+    /**
+     * Get the time spent in a phase
+     *
+     * @param phase one of the phase constants
+     * @return the total time in nanoseconds
+     */
+    public long getNanos(int phase) {
+        return this.nanos[phase];
+    }
+
+    /**
+     * Get the number of sprites handled by a phase
+     *
+     * @param phase one of the phase constants
+     * @return the total number of sprites, for the spawn phase it is the spawned sprites and
+     * for the kill events phase it is the events
+     */
+    public long getCount(int phase) {
+        return this.counts[phase];
+    }
+
+    /**
+     * Get the time spent in all the phases
+     *
+     * @return the total time in nanoseconds
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (long n : this.nanos) {
+            total += n;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append("Ticks: ").append(this.ticks).append(" Total: ").append(this.getTotalNanos() / 1000).append(" us");
+        for (int i = 0; i < PHASES; i++) {
+            result.append("\n  ").append(getPhaseName(i)).append(": ").append(this.nanos[i] / 1000).append(" us (")
+                    .append(this.ticks > 0 ? this.nanos[i] / this.ticks : 0).append(" ns/tick, ")
+                    .append(this.counts[i]).append(" sprites)");
+        }
+        return result.toString();
+    }
+}
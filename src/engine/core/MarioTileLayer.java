@@ -0,0 +1,133 @@
+package engine.core;
+
+import java.util.Arrays;
+
+/**
+ * A level sized grid of tile values between 0 and 255 stored as chunks of columns. Each
+ * chunk is a flat byte array in column major order. Chunks are shared between a layer and
+ * its clones and only get copied the first time one of them writes into it, so cloning a
+ * level does not depend on the level width.
+ */
+class MarioTileLayer {
+    /**
+     * number of columns in each chunk as a power of two
+     */
+    static final int CHUNK_SHIFT = 4;
+    static final int CHUNK_WIDTH = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_WIDTH - 1;
+
+    private final int width;
+    private final int height;
+    private byte[][] chunks;
+    private boolean[] owned;
+
+    /**
+     * Create a layer where all the tiles have the same value
+     *
+     * @param width  the width of the layer in tiles
+     * @param height the height of the layer in tiles
+     * @param value  the initial value of every tile
+     */
+    MarioTileLayer(int width, int height, int value) {
+        this.width = width;
+        this.height = height;
+        this.chunks = new byte[(width + CHUNK_MASK) >> CHUNK_SHIFT][];
+        this.owned = new boolean[this.chunks.length];
+        for (int c = 0; c < this.chunks.length; c++) {
+            this.chunks[c] = new byte[CHUNK_WIDTH * height];
+            Arrays.fill(this.chunks[c], toByte(value));
+            this.owned[c] = true;
+        }
+    }
+
+    /**
+     * Create a layer from a flat column major grid of values
+     *
+     * @param width  the width of the layer in tiles
+     * @param height the height of the layer in tiles
+     * @param values the tile values where the tile (x, y) is at x * height + y
+     */
+    MarioTileLayer(int width, int height, byte[] values) {
+        this(width, height, 0);
+        int chunkSize = CHUNK_WIDTH * height;
+        for (int c = 0; c < this.chunks.length; c++) {
+            System.arraycopy(values, c * chunkSize, this.chunks[c], 0, Math.min(chunkSize, values.length - c * chunkSize));
+        }
+    }
+
+    private MarioTileLayer(MarioTileLayer other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.chunks = other.chunks.clone();
+        this.owned = new boolean[this.chunks.length];
+    }
+
+    private static byte toByte(int value) {
+        if (value < 0 || value > 255) {
+            throw new IllegalArgumentException("tile value " + value + " is not between 0 and 255");
+        }
+        return (byte) value;
+    }
+
+    /**
+     * Create a copy of the layer that shares all the chunks with this one. Both layers
+     * lose the ownership of their chunks and copy them again on the next write.
+     *
+     * @return a layer with the same tile values
+     */
+    MarioTileLayer share() {
+        Arrays.fill(this.owned, false);
+        return new MarioTileLayer(this);
+    }
+
+    /**
+     * Make a layer share all the chunks of this one, reusing its arrays when the sizes match
+     *
+     * @param target the layer to overwrite, can be null
+     * @return the target layer or a new one if the target can't be reused
+     */
+    MarioTileLayer shareInto(MarioTileLayer target) {
+        if (target == null || target.width != this.width || target.height != this.height) {
+            return this.share();
+        }
+        Arrays.fill(this.owned, false);
+        System.arraycopy(this.chunks, 0, target.chunks, 0, this.chunks.length);
+        Arrays.fill(target.owned, false);
+        return target;
+    }
+
+    int get(int x, int y) {
+        return this.chunks[x >> CHUNK_SHIFT][(x & CHUNK_MASK) * this.height + y] & 0xFF;
+    }
+
+    void set(int x, int y, int value) {
+        int c = x >> CHUNK_SHIFT;
+        int index = (x & CHUNK_MASK) * this.height + y;
+        byte[] chunk = this.chunks[c];
+        byte b = toByte(value);
+        if (chunk[index] == b) {
+            return;
+        }
+        if (!this.owned[c]) {
+            chunk = chunk.clone();
+            this.chunks[c] = chunk;
+            this.owned[c] = true;
+        }
+        chunk[index] = b;
+    }
+
+    /**
+     * Get the number of chunks that got copied by this layer since it was shared
+     *
+     * @return number of chunks owned by this layer
+     */
+    int getOwnedChunks() {
+        int count = 0;
+        for (boolean o : this.owned) {
+            if (o) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+}
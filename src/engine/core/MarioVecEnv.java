@@ -0,0 +1,259 @@
+package engine.core;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import engine.helper.GameStatus;
+import engine.helper.MarioActions;
+
+/**
+ * A batch of independent worlds that are stepped together, meant for training agents. The
+ * actions come as one byte per world and the observations, rewards and done flags are
+ * written into flat arrays owned by the caller. A world that ends is reset to the next
+ * level of the list in the same step.
+ */
+public class MarioVecEnv {
+    /**
+     * minimum number of worlds updated by one task when stepping in parallel
+     */
+    private static final int TASK_WORLDS = 8;
+
+    /**
+     * the reward added when mario reaches the flag
+     */
+    public float winReward = 10;
+    /**
+     * the reward added when mario dies or the time runs out
+     */
+    public float loseReward = -10;
+    /**
+     * the detail level of the scene in the observations
+     */
+    public int sceneDetail = 1;
+    /**
+     * the detail level of the enemies in the observations
+     */
+    public int enemyDetail = 0;
+
+    private final ForkJoinPool pool;
+    private final ArrayList<String> levels;
+    private final int timer;
+    private final int marioState;
+    private final MarioWorld[] initialWorlds;
+    private final MarioWorld[] worlds;
+    private final boolean[][] actions;
+    private final int[][] observations;
+    private final float[] lastX;
+    private final GameStatus[] lastStatus;
+    private int nextLevel;
+
+    /**
+     * Create the worlds of the environment, they start on the levels of the list in order
+     *
+     * @param count      the number of worlds
+     * @param levels     the levels to play, each reset takes the next one in the list
+     * @param timer      number of seconds for each level, the same as in MarioGame.runGame
+     * @param marioState the initial state that mario appears in. 0 small mario, 1 large mario, and 2 fire mario.
+     * @param pool       the pool that updates the worlds in parallel, or null to update them one after the other
+     */
+    public MarioVecEnv(int count, ArrayList<String> levels, int timer, int marioState, ForkJoinPool pool) {
+        if (levels.isEmpty()) {
+            throw new IllegalArgumentException("the environment needs at least one level");
+        }
+        this.pool = pool;
+        this.levels = levels;
+        this.timer = timer;
+        this.marioState = marioState;
+        this.initialWorlds = new MarioWorld[levels.size()];
+        this.worlds = new MarioWorld[count];
+        this.actions = new boolean[count][MarioActions.numberOfActions()];
+        this.observations = new int[count][this.getObservationSize()];
+        this.lastX = new float[count];
+        this.lastStatus = new GameStatus[count];
+        for (int i = 0; i < count; i++) {
+            this.worlds[i] = new MarioWorld(null);
+            this.resetWorld(i);
+        }
+    }
+
+    /**
+     * Get the number of worlds
+     *
+     * @return the number of worlds in the environment
+     */
+    public int getCount() {
+        return this.worlds.length;
+    }
+
+    /**
+     * Get the number of observation values for each world
+     *
+     * @return the size of the observation grid
+     */
+    public int getObservationSize() {
+        return MarioGame.tileWidth * MarioGame.tileHeight;
+    }
+
+    /**
+     * Get how the last episode of a world ended
+     *
+     * @param index the index of the world
+     * @return the status of the last finished episode or null if none finished yet
+     */
+    public GameStatus getLastStatus(int index) {
+        return this.lastStatus[index];
+    }
+
+    /**
+     * Get a forward model of the current state of a world
+     *
+     * @param index the index of the world
+     * @return a forward model on a copy of the world
+     */
+    public MarioForwardModel getModel(int index) {
+        return new MarioForwardModel(this.worlds[index].clone());
+    }
+
+    /**
+     * Reset all the worlds and write their observations
+     *
+     * @param observations array of getCount() * getObservationSize() values, world i starts at i * getObservationSize()
+     */
+    public void reset(int[] observations) {
+        for (int i = 0; i < this.worlds.length; i++) {
+            this.resetWorld(i);
+            this.writeObservation(i);
+            System.arraycopy(this.observations[i], 0, observations, i * this.getObservationSize(), this.getObservationSize());
+        }
+    }
+
+    /**
+     * Advance every world by one tick. The observation of a world that ended is the one of
+     * the level it got reset to.
+     *
+     * @param actions      one byte per world where bit i is the state of the button with MarioActions value i
+     * @param observations array of getCount() * getObservationSize() values, world i starts at i * getObservationSize()
+     * @param rewards      array that receives the reward of each world, the distance moved right in tiles plus
+     *                     winReward or loseReward when the episode ends
+     * @param dones        array that receives true for the worlds that ended in this step
+     */
+    public void step(byte[] actions, int[] observations, float[] rewards, boolean[] dones) {
+        if (this.pool == null || this.worlds.length <= TASK_WORLDS) {
+            this.stepWorlds(actions, rewards, dones, 0, this.worlds.length);
+        } else {
+            this.pool.invoke(new StepTask(this, actions, rewards, dones, 0, this.worlds.length));
+        }
+        // the resets share the level storage of the initial worlds so they stay on this thread
+        for (int i = 0; i < this.worlds.length; i++) {
+            if (dones[i]) {
+                this.resetWorld(i);
+                this.writeObservation(i);
+            }
+            System.arraycopy(this.observations[i], 0, observations, i * this.getObservationSize(), this.getObservationSize());
+        }
+    }
+
+    private void stepWorlds(byte[] actions, float[] rewards, boolean[] dones, int start, int end) {
+        for (int i = start; i < end; i++) {
+            MarioWorld world = this.worlds[i];
+            boolean[] buttons = this.actions[i];
+            for (int b = 0; b < buttons.length; b++) {
+                buttons[b] = (actions[i] & (1 << b)) != 0;
+            }
+            world.update(buttons);
+            rewards[i] = getReward(world, this.lastX[i], this.winReward, this.loseReward);
+            this.lastX[i] = world.mario.x;
+            dones[i] = world.gameStatus != GameStatus.RUNNING;
+            if (dones[i]) {
+                this.lastStatus[i] = world.gameStatus;
+            } else {
+                this.writeObservation(i);
+            }
+        }
+    }
+
+    /**
+     * Get the reward of the last tick of a world
+     *
+     * @param world      the world after the tick
+     * @param lastX      mario x position before the tick
+     * @param winReward  the reward added when mario reaches the flag
+     * @param loseReward the reward added when mario dies or the time runs out
+     * @return the distance moved right in tiles plus the reward of the end of the episode
+     */
+    static float getReward(MarioWorld world, float lastX, float winReward, float loseReward) {
+        float reward = (world.mario.x - lastX) / 16;
+        if (world.gameStatus == GameStatus.WIN) {
+            reward += winReward;
+        } else if (world.gameStatus != GameStatus.RUNNING) {
+            reward += loseReward;
+        }
+        return reward;
+    }
+
+    /**
+     * Create a world in the same state as the one MarioGame starts playing
+     *
+     * @param level      the level to play
+     * @param timer      number of seconds for the level
+     * @param marioState the initial state that mario appears in
+     * @return a world without visuals after its first update
+     */
+    static MarioWorld createInitialWorld(String level, int timer, int marioState) {
+        MarioWorld world = new MarioWorld(null);
+        world.visuals = false;
+        world.initializeLevel(level, 1000 * timer);
+        world.mario.isLarge = marioState > 0;
+        world.mario.isFire = marioState > 1;
+        world.update(new boolean[MarioActions.numberOfActions()]);
+        return world;
+    }
+
+    private void writeObservation(int index) {
+        MarioWorld world = this.worlds[index];
+        world.getMergedObservation(world.mario.x, world.mario.y, this.sceneDetail, this.enemyDetail,
+                this.observations[index]);
+    }
+
+    private void resetWorld(int index) {
+        int level = this.nextLevel;
+        this.nextLevel = (this.nextLevel + 1) % this.levels.size();
+        if (this.initialWorlds[level] == null) {
+            this.initialWorlds[level] = createInitialWorld(this.levels.get(level), this.timer, this.marioState);
+        }
+        this.initialWorlds[level].copyInto(this.worlds[index]);
+        this.lastX[index] = this.worlds[index].mario.x;
+    }
+
+    private static class StepTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final MarioVecEnv env;
+        private final byte[] actions;
+        private final float[] rewards;
+        private final boolean[] dones;
+        private final int start;
+        private final int end;
+
+        StepTask(MarioVecEnv env, byte[] actions, float[] rewards, boolean[] dones, int start, int end) {
+            this.env = env;
+            this.actions = actions;
+            this.rewards = rewards;
+            this.dones = dones;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.start > TASK_WORLDS) {
+                int middle = (this.start + this.end) >>> 1;
+                invokeAll(new StepTask(this.env, this.actions, this.rewards, this.dones, this.start, middle),
+                        new StepTask(this.env, this.actions, this.rewards, this.dones, middle, this.end));
+                return;
+            }
+            this.env.stepWorlds(this.actions, this.rewards, this.dones, this.start, this.end);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package engine.core;
 import java.awt.Graphics;
 import java.awt.GraphicsConfiguration;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import engine.effects.*;
 import engine.graphics.MarioBackground;
@@ -13,6 +14,8 @@ import engine.helper.TileFeature;
 import engine.sprites.*;
 
 public class MarioWorld {
+    private static final int MAX_SPRITE_MOVE = 32;
+
     public GameStatus gameStatus;
     public int pauseTimer = 0;
     public int fireballsOnScreen = 0;
@@ -33,9 +36,18 @@ public class MarioWorld {
     private ArrayList<Fireball> fireballsToCheck;
     private ArrayList<MarioSprite> addedSprites;
     private ArrayList<MarioSprite> removedSprites;
+    private ArrayList<MarioSprite> spareSprites;
+    private ArrayList<MarioCheckpoint> checkpoints;
+    private int checkpointDepth;
 
     private ArrayList<MarioEffect> effects;
 
+    private MarioSpriteGrid spriteGrid = new MarioSpriteGrid();
+    private int[] collideQuery = new int[16];
+    private int[] bumpQuery = new int[16];
+    private int[] observationBuffer;
+    private MarioTickStats tickStats;
+
     private MarioBackground[] backgrounds = new MarioBackground[2];
 
     public MarioWorld(MarioEvent[] killEvents) {
@@ -46,6 +58,8 @@ public class MarioWorld {
         this.fireballsToCheck = new ArrayList<>();
         this.addedSprites = new ArrayList<>();
         this.removedSprites = new ArrayList<>();
+        this.spareSprites = new ArrayList<>();
+        this.checkpoints = new ArrayList<>();
         this.effects = new ArrayList<>();
         this.lastFrameEvents = new ArrayList<>();
         this.killEvents = killEvents;
@@ -86,8 +100,19 @@ public class MarioWorld {
     }
 
     public void initializeLevel(String level, int timer) {
+        this.initializeLevel(MarioLevelTemplate.get(level), timer);
+    }
+
+    /**
+     * Start a level from a parsed template, the level tiles are shared with the template
+     * until the world changes them
+     *
+     * @param template the parsed level
+     * @param timer    the time of the level in milliseconds
+     */
+    public void initializeLevel(MarioLevelTemplate template, int timer) {
         this.currentTimer = timer;
-        this.level = new MarioLevel(level, this.visuals);
+        this.level = template.createLevel(this.visuals);
 
         this.mario = new Mario(this.visuals, this.level.marioTileX * 16, this.level.marioTileY * 16);
         this.mario.alive = true;
@@ -133,6 +158,156 @@ public class MarioWorld {
         return world;
     }
 
+    /**
+     * Overwrite another world so it ends up equal to a clone of this world. The target
+     * sprites are recycled for sprites of the same class and its level storage is reused.
+     *
+     * @param world the world object to overwrite
+     */
+    public void copyInto(MarioWorld world) {
+        world.killEvents = this.killEvents;
+        world.visuals = false;
+        world.cameraX = this.cameraX;
+        world.cameraY = this.cameraY;
+        world.fireballsOnScreen = this.fireballsOnScreen;
+        world.gameStatus = this.gameStatus;
+        world.pauseTimer = this.pauseTimer;
+        world.currentTimer = this.currentTimer;
+        world.currentTick = this.currentTick;
+        if (world.level == null) {
+            world.level = this.level.clone();
+        } else {
+            this.level.copyInto(world.level);
+        }
+
+        world.spareSprites.addAll(world.sprites);
+        world.sprites.clear();
+        world.shellsToCheck.clear();
+        world.fireballsToCheck.clear();
+        world.addedSprites.clear();
+        world.removedSprites.clear();
+        world.effects.clear();
+        world.lastFrameEvents.clear();
+        world.spriteGrid.invalidate();
+        world.checkpointDepth = 0;
+        world.mario = null;
+        for (MarioSprite sprite : this.sprites) {
+            MarioSprite copySprite = world.takeSpareSprite(sprite.getClass());
+            if (copySprite == null) {
+                copySprite = sprite.clone();
+            } else {
+                sprite.copyInto(copySprite);
+            }
+            copySprite.world = world;
+            if (copySprite.type == SpriteType.MARIO) {
+                world.mario = (Mario) copySprite;
+            }
+            world.sprites.add(copySprite);
+        }
+        if (world.mario == null) {
+            world.mario = (Mario) this.mario.clone();
+        }
+        //stats
+        world.coins = this.coins;
+        world.lives = this.lives;
+    }
+
+    /**
+     * Save the current state so it can be restored with rollback. Tile changes after this
+     * point are recorded in the level undo log instead of copying the level.
+     *
+     * @return the checkpoint mark to pass to rollback
+     */
+    public int checkpoint() {
+        if (this.checkpointDepth == this.checkpoints.size()) {
+            this.checkpoints.add(new MarioCheckpoint());
+        }
+        MarioCheckpoint checkpoint = this.checkpoints.get(this.checkpointDepth);
+        checkpoint.clearSprites();
+        checkpoint.gameStatus = this.gameStatus;
+        checkpoint.pauseTimer = this.pauseTimer;
+        checkpoint.fireballsOnScreen = this.fireballsOnScreen;
+        checkpoint.currentTimer = this.currentTimer;
+        checkpoint.currentTick = this.currentTick;
+        checkpoint.cameraX = this.cameraX;
+        checkpoint.cameraY = this.cameraY;
+        checkpoint.coins = this.coins;
+        checkpoint.lives = this.lives;
+        for (MarioSprite sprite : this.sprites) {
+            checkpoint.sprites.add(sprite);
+            checkpoint.spriteStates.add(checkpoint.saveSprite(sprite));
+        }
+        checkpoint.mario = this.mario;
+        checkpoint.marioState = (Mario) checkpoint.saveSprite(this.mario);
+        checkpoint.lastFrameEvents.addAll(this.lastFrameEvents);
+        if (this.checkpointDepth == 0) {
+            this.level.startUndoLog();
+        }
+        checkpoint.undoMark = this.level.getUndoMark();
+        this.checkpointDepth += 1;
+        return this.checkpointDepth - 1;
+    }
+
+    /**
+     * Go back to the state saved by a checkpoint. That checkpoint and all the ones made
+     * after it are dropped.
+     *
+     * @param mark the value returned by checkpoint
+     */
+    public void rollback(int mark) {
+        if (mark < 0 || mark >= this.checkpointDepth) {
+            throw new IllegalArgumentException("No checkpoint with mark " + mark);
+        }
+        MarioCheckpoint checkpoint = this.checkpoints.get(mark);
+        this.gameStatus = checkpoint.gameStatus;
+        this.pauseTimer = checkpoint.pauseTimer;
+        this.fireballsOnScreen = checkpoint.fireballsOnScreen;
+        this.currentTimer = checkpoint.currentTimer;
+        this.currentTick = checkpoint.currentTick;
+        this.cameraX = checkpoint.cameraX;
+        this.cameraY = checkpoint.cameraY;
+        this.coins = checkpoint.coins;
+        this.lives = checkpoint.lives;
+        this.level.undo(checkpoint.undoMark);
+        this.sprites.clear();
+        for (int i = 0; i < checkpoint.sprites.size(); i++) {
+            MarioSprite sprite = checkpoint.sprites.get(i);
+            checkpoint.restoreSprite(checkpoint.spriteStates.get(i), sprite, this);
+            this.sprites.add(sprite);
+        }
+        this.mario = checkpoint.mario;
+        checkpoint.restoreSprite(checkpoint.marioState, this.mario, this);
+        this.lastFrameEvents.clear();
+        this.lastFrameEvents.addAll(checkpoint.lastFrameEvents);
+        this.spriteGrid.invalidate();
+        this.checkpointDepth = mark;
+        if (this.checkpointDepth == 0) {
+            this.level.stopUndoLog();
+        }
+    }
+
+    /**
+     * Get the number of checkpoints that can still be rolled back to
+     *
+     * @return the number of active checkpoints
+     */
+    public int getCheckpointDepth() {
+        return this.checkpointDepth;
+    }
+
+    private MarioSprite takeSpareSprite(Class<?> spriteClass) {
+        for (int i = this.spareSprites.size() - 1; i >= 0; i--) {
+            MarioSprite sprite = this.spareSprites.get(i);
+            if (sprite.getClass() == spriteClass) {
+                int last = this.spareSprites.size() - 1;
+                this.spareSprites.set(i, this.spareSprites.get(last));
+                this.spareSprites.remove(last);
+                return sprite;
+            }
+        }
+        return null;
+    }
+
     public void addEvent(EventType eventType, int eventParam) {
         int marioState = 0;
         if (this.mario.isLarge) {
@@ -188,19 +363,32 @@ public class MarioWorld {
     }
 
     public int[][] getSceneObservation(float centerX, float centerY, int detail) {
-        int[][] ret = new int[MarioGame.tileWidth][MarioGame.tileHeight];
+        return this.getSceneObservation(centerX, centerY, detail, new int[MarioGame.tileWidth][MarioGame.tileHeight]);
+    }
+
+    public int[][] getSceneObservation(float centerX, float centerY, int detail, int[][] ret) {
+        this.getSceneObservation(centerX, centerY, detail, this.getObservationBuffer());
+        return this.copyObservationBuffer(ret);
+    }
+
+    /**
+     * Fill a flat observation of the scene around a point, the value of the tile at
+     * (obsX, obsY) is stored at obsX * MarioGame.tileHeight + obsY
+     *
+     * @param centerX the x position in the middle of the observation
+     * @param centerY the y position in the middle of the observation
+     * @param detail  the detail level of the scene
+     * @param ret     buffer with at least MarioGame.tileWidth * MarioGame.tileHeight values
+     * @return the filled buffer
+     */
+    public int[] getSceneObservation(float centerX, float centerY, int detail, int[] ret) {
+        int[] generalization = MarioForwardModel.getBlockGeneralization(detail);
         int centerXInMap = (int) centerX / 16;
         int centerYInMap = (int) centerY / 16;
 
         for (int y = centerYInMap - MarioGame.tileHeight / 2, obsY = 0; y < centerYInMap + MarioGame.tileHeight / 2; y++, obsY++) {
             for (int x = centerXInMap - MarioGame.tileWidth / 2, obsX = 0; x < centerXInMap + MarioGame.tileWidth / 2; x++, obsX++) {
-                int currentX = x;
-                if (currentX < 0) {
-                    currentX = 0;
-                }
-                if (currentX > level.tileWidth - 1) {
-                    currentX = level.tileWidth - 1;
-                }
+                // getBlock already repeats the edge columns, only the rows have to be clamped
                 int currentY = y;
                 if (currentY < 0) {
                     currentY = 0;
@@ -208,62 +396,80 @@ public class MarioWorld {
                 if (currentY > level.tileHeight - 1) {
                     currentY = level.tileHeight - 1;
                 }
-                ret[obsX][obsY] = MarioForwardModel.getBlockValueGeneralization(this.level.getBlock(currentX, currentY), detail);
+                int tile = this.level.getBlock(x, currentY);
+                ret[obsX * MarioGame.tileHeight + obsY] = tile >= 0 && tile < generalization.length ?
+                        generalization[tile] : MarioForwardModel.getBlockValueGeneralization(tile, detail);
             }
         }
         return ret;
     }
 
     public int[][] getEnemiesObservation(float centerX, float centerY, int detail) {
-        int[][] ret = new int[MarioGame.tileWidth][MarioGame.tileHeight];
-        int centerXInMap = (int) centerX / 16;
-        int centerYInMap = (int) centerY / 16;
+        return this.getEnemiesObservation(centerX, centerY, detail, new int[MarioGame.tileWidth][MarioGame.tileHeight]);
+    }
 
-        for (int w = 0; w < ret.length; w++)
-            for (int h = 0; h < ret[0].length; h++)
-                ret[w][h] = 0;
+    public int[][] getEnemiesObservation(float centerX, float centerY, int detail, int[][] ret) {
+        this.getEnemiesObservation(centerX, centerY, detail, this.getObservationBuffer());
+        return this.copyObservationBuffer(ret);
+    }
 
-        for (MarioSprite sprite : sprites) {
-            if (sprite.type == SpriteType.MARIO)
-                continue;
-            if (sprite.getMapX() >= 0 &&
-                    sprite.getMapX() > centerXInMap - MarioGame.tileWidth / 2 &&
-                    sprite.getMapX() < centerXInMap + MarioGame.tileWidth / 2 &&
-                    sprite.getMapY() >= 0 &&
-                    sprite.getMapY() > centerYInMap - MarioGame.tileHeight / 2 &&
-                    sprite.getMapY() < centerYInMap + MarioGame.tileHeight / 2) {
-                int obsX = sprite.getMapX() - centerXInMap + MarioGame.tileWidth / 2;
-                int obsY = sprite.getMapY() - centerYInMap + MarioGame.tileHeight / 2;
-                ret[obsX][obsY] = MarioForwardModel.getSpriteTypeGeneralization(sprite.type, detail);
-            }
-        }
+    /**
+     * Fill a flat observation of the enemies around a point, the value of the tile at
+     * (obsX, obsY) is stored at obsX * MarioGame.tileHeight + obsY
+     *
+     * @param centerX the x position in the middle of the observation
+     * @param centerY the y position in the middle of the observation
+     * @param detail  the detail level of the enemies
+     * @param ret     buffer with at least MarioGame.tileWidth * MarioGame.tileHeight values
+     * @return the filled buffer
+     */
+    public int[] getEnemiesObservation(float centerX, float centerY, int detail, int[] ret) {
+        Arrays.fill(ret, 0, MarioGame.tileWidth * MarioGame.tileHeight, 0);
+        this.addSpritesObservation(centerX, centerY, detail, false, ret);
         return ret;
     }
 
     public int[][] getMergedObservation(float centerX, float centerY, int sceneDetail, int enemiesDetail) {
-        int[][] ret = new int[MarioGame.tileWidth][MarioGame.tileHeight];
+        return this.getMergedObservation(centerX, centerY, sceneDetail, enemiesDetail,
+                new int[MarioGame.tileWidth][MarioGame.tileHeight]);
+    }
+
+    public int[][] getMergedObservation(float centerX, float centerY, int sceneDetail, int enemiesDetail, int[][] ret) {
+        this.getMergedObservation(centerX, centerY, sceneDetail, enemiesDetail, this.getObservationBuffer());
+        return this.copyObservationBuffer(ret);
+    }
+
+    /**
+     * Fill a flat observation of the scene and the enemies around a point, the value of
+     * the tile at (obsX, obsY) is stored at obsX * MarioGame.tileHeight + obsY
+     *
+     * @param centerX       the x position in the middle of the observation
+     * @param centerY       the y position in the middle of the observation
+     * @param sceneDetail   the detail level of the scene
+     * @param enemiesDetail the detail level of the enemies
+     * @param ret           buffer with at least MarioGame.tileWidth * MarioGame.tileHeight values
+     * @return the filled buffer
+     */
+    public int[] getMergedObservation(float centerX, float centerY, int sceneDetail, int enemiesDetail, int[] ret) {
+        int[] generalization = MarioForwardModel.getBlockGeneralization(sceneDetail);
         int centerXInMap = (int) centerX / 16;
         int centerYInMap = (int) centerY / 16;
 
         for (int y = centerYInMap - MarioGame.tileHeight / 2, obsY = 0; y < centerYInMap + MarioGame.tileHeight / 2; y++, obsY++) {
             for (int x = centerXInMap - MarioGame.tileWidth / 2, obsX = 0; x < centerXInMap + MarioGame.tileWidth / 2; x++, obsX++) {
-                int currentX = x;
-                if (currentX < 0) {
-                    currentX = 0;
-                }
-                if (currentX > level.tileWidth - 1) {
-                    currentX = level.tileWidth - 1;
-                }
-                int currentY = y;
-                if (currentY < 0) {
-                    currentY = 0;
-                }
-                if (currentY > level.tileHeight - 1) {
-                    currentY = level.tileHeight - 1;
-                }
-                ret[obsX][obsY] = MarioForwardModel.getBlockValueGeneralization(this.level.getBlock(x, y), sceneDetail);
+                int tile = this.level.getBlock(x, y);
+                ret[obsX * MarioGame.tileHeight + obsY] = tile >= 0 && tile < generalization.length ?
+                        generalization[tile] : MarioForwardModel.getBlockValueGeneralization(tile, sceneDetail);
             }
         }
+        this.addSpritesObservation(centerX, centerY, enemiesDetail, true, ret);
+        return ret;
+    }
+
+    private void addSpritesObservation(float centerX, float centerY, int detail, boolean skipNone, int[] ret) {
+        int[] generalization = MarioForwardModel.getSpriteGeneralization(detail);
+        int centerXInMap = (int) centerX / 16;
+        int centerYInMap = (int) centerY / 16;
 
         for (MarioSprite sprite : sprites) {
             if (sprite.type == SpriteType.MARIO)
@@ -276,16 +482,64 @@ public class MarioWorld {
                     sprite.getMapY() < centerYInMap + MarioGame.tileHeight / 2) {
                 int obsX = sprite.getMapX() - centerXInMap + MarioGame.tileWidth / 2;
                 int obsY = sprite.getMapY() - centerYInMap + MarioGame.tileHeight / 2;
-                int tmp = MarioForwardModel.getSpriteTypeGeneralization(sprite.type, enemiesDetail);
-                if (tmp != SpriteType.NONE.getValue()) {
-                    ret[obsX][obsY] = tmp;
+                int tmp = generalization[sprite.type.ordinal()];
+                if (!skipNone || tmp != SpriteType.NONE.getValue()) {
+                    ret[obsX * MarioGame.tileHeight + obsY] = tmp;
                 }
             }
         }
+    }
+
+    private int[] getObservationBuffer() {
+        if (this.observationBuffer == null) {
+            this.observationBuffer = new int[MarioGame.tileWidth * MarioGame.tileHeight];
+        }
+        return this.observationBuffer;
+    }
 
+    private int[][] copyObservationBuffer(int[][] ret) {
+        for (int x = 0; x < MarioGame.tileWidth; x++) {
+            System.arraycopy(this.observationBuffer, x * MarioGame.tileHeight, ret[x], 0, MarioGame.tileHeight);
+        }
         return ret;
     }
 
+    /**
+     * Get the number of enemies in the world
+     *
+     * @return the number of sprites that getEnemies would return
+     */
+    public int getEnemiesCount() {
+        int count = 0;
+        for (MarioSprite sprite : sprites) {
+            if (this.isEnemy(sprite)) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Write the type, x and y of the enemies one after the other, stopping when the buffer is full
+     *
+     * @param ret the buffer that receives 3 values per enemy
+     * @return the number of enemies in the world, can be more than what fits in the buffer
+     */
+    public int getEnemiesFloatPos(float[] ret) {
+        int count = 0;
+        for (MarioSprite sprite : sprites) {
+            if (this.isEnemy(sprite)) {
+                if (3 * count + 2 < ret.length) {
+                    ret[3 * count] = sprite.type.getValue();
+                    ret[3 * count + 1] = sprite.x;
+                    ret[3 * count + 2] = sprite.y;
+                }
+                count += 1;
+            }
+        }
+        return count;
+    }
+
     private boolean isEnemy(MarioSprite sprite) {
         return sprite instanceof Enemy || sprite instanceof FlowerEnemy || sprite instanceof BulletBill;
     }
@@ -311,6 +565,12 @@ public class MarioWorld {
             }
         }
         this.currentTick += 1;
+        MarioTickStats stats = this.tickStats;
+        long phaseStart = 0;
+        if (stats != null) {
+            stats.startTick();
+            phaseStart = System.nanoTime();
+        }
         this.cameraX = this.mario.x - MarioGame.width / 2;
         if (this.cameraX + MarioGame.width > this.level.width) {
             this.cameraX = this.level.width - MarioGame.width;
@@ -345,6 +605,10 @@ public class MarioWorld {
             }
         }
         this.level.update((int) cameraX, (int) cameraY);
+        this.spriteGrid.invalidate();
+        if (stats != null) {
+            phaseStart = stats.endPhase(MarioTickStats.CAMERA, phaseStart, this.sprites.size());
+        }
 
         for (int x = (int) cameraX / 16 - 1; x <= (int) (cameraX + MarioGame.width) / 16 + 1; x++) {
             for (int y = (int) cameraY / 16 - 1; y <= (int) (cameraY + MarioGame.height) / 16 + 1; y++) {
@@ -356,18 +620,11 @@ public class MarioWorld {
 
                 SpriteType type = level.getSpriteType(x, y);
                 if (type != SpriteType.NONE) {
-                    String spriteCode = level.getSpriteCode(x, y);
-                    boolean found = false;
-                    for (MarioSprite sprite : sprites) {
-                        if (sprite.initialCode.equals(spriteCode)) {
-                            found = true;
-                            break;
-                        }
-                    }
-                    if (!found) {
+                    if (this.level.getSpawnedSprites(x, y) == 0) {
                         if (this.level.getLastSpawnTick(x, y) != this.currentTick - 1) {
                             MarioSprite sprite = type.spawnSprite(this.visuals, x, y, dir);
-                            sprite.initialCode = spriteCode;
+                            sprite.initialCode = level.getSpriteCode(x, y);
+                            sprite.spawnId = level.getSpawnId(x, y);
                             this.addSprite(sprite);
                         }
                     }
@@ -375,8 +632,7 @@ public class MarioWorld {
                 }
 
                 if (dir != 0) {
-                    ArrayList<TileFeature> features = TileFeature.getTileType(this.level.getBlock(x, y));
-                    if (features.contains(TileFeature.SPAWNER)) {
+                    if (TileFeature.hasFeature(this.level.getBlock(x, y), TileFeature.SPAWNER)) {
                         if (this.currentTick % 100 == 0) {
                             addSprite(new BulletBill(this.visuals, x * 16 + 8 + dir * 8, y * 16 + 15, dir));
                         }
@@ -385,6 +641,10 @@ public class MarioWorld {
             }
         }
 
+        if (stats != null) {
+            phaseStart = stats.endPhase(MarioTickStats.SPAWN, phaseStart, this.addedSprites.size());
+        }
+
         this.mario.actions = actions;
         for (MarioSprite sprite : sprites) {
             if (!sprite.alive) {
@@ -392,15 +652,29 @@ public class MarioWorld {
             }
             sprite.update();
         }
-        for (MarioSprite sprite : sprites) {
+        if (stats != null) {
+            phaseStart = stats.endPhase(MarioTickStats.UPDATE, phaseStart, this.sprites.size());
+        }
+        // sprites don't move horizontally from here till the end of the tick, so one grid
+        // serves the mario, shell and fireball checks
+        this.spriteGrid.build(this.sprites, this.cameraX);
+        this.collideQuery = this.spriteGrid.fit(this.collideQuery);
+        int count = this.spriteGrid.query(this.mario.x - 16, this.mario.x + 16, this.collideQuery);
+        for (int i = 0; i < count; i++) {
+            MarioSprite sprite = this.sprites.get(this.collideQuery[i]);
             if (!sprite.alive) {
                 continue;
             }
             sprite.collideCheck();
         }
+        if (stats != null) {
+            phaseStart = stats.endPhase(MarioTickStats.COLLIDE, phaseStart, count);
+        }
 
         for (Shell shell : shellsToCheck) {
-            for (MarioSprite sprite : sprites) {
+            count = this.spriteGrid.query(shell.x - 16, shell.x + 16, this.collideQuery);
+            for (int i = 0; i < count; i++) {
+                MarioSprite sprite = this.sprites.get(this.collideQuery[i]);
                 if (sprite != shell && shell.alive && sprite.alive) {
                     if (sprite.shellCollideCheck(shell)) {
                         this.removeSprite(sprite);
@@ -408,10 +682,15 @@ public class MarioWorld {
                 }
             }
         }
+        if (stats != null) {
+            phaseStart = stats.endPhase(MarioTickStats.SHELLS, phaseStart, this.shellsToCheck.size());
+        }
         shellsToCheck.clear();
 
         for (Fireball fireball : fireballsToCheck) {
-            for (MarioSprite sprite : sprites) {
+            count = this.spriteGrid.query(fireball.x - 16, fireball.x + 16, this.collideQuery);
+            for (int i = 0; i < count; i++) {
+                MarioSprite sprite = this.sprites.get(this.collideQuery[i]);
                 if (sprite != fireball && fireball.alive && sprite.alive) {
                     if (sprite.fireballCollideCheck(fireball)) {
                         if (this.visuals) {
@@ -422,10 +701,29 @@ public class MarioWorld {
                 }
             }
         }
+        if (stats != null) {
+            phaseStart = stats.endPhase(MarioTickStats.FIREBALLS, phaseStart, this.fireballsToCheck.size());
+        }
         fireballsToCheck.clear();
 
+        for (MarioSprite sprite : addedSprites) {
+            if (sprite.spawnId >= 0) {
+                this.level.changeSpawnedSprites(sprite.spawnId, 1);
+            }
+        }
+        for (int i = 0; i < removedSprites.size(); i++) {
+            MarioSprite sprite = removedSprites.get(i);
+            // the same sprite can be removed more than once in a tick
+            if (sprite.spawnId >= 0 && removedSprites.indexOf(sprite) == i) {
+                this.level.changeSpawnedSprites(sprite.spawnId, -1);
+            }
+        }
         sprites.addAll(0, addedSprites);
         sprites.removeAll(removedSprites);
+        if (stats != null) {
+            phaseStart = stats.endPhase(MarioTickStats.MERGE, phaseStart,
+                    this.addedSprites.size() + this.removedSprites.size());
+        }
         addedSprites.clear();
         removedSprites.clear();
 
@@ -437,25 +735,54 @@ public class MarioWorld {
                 }
             }
         }
+        if (stats != null) {
+            stats.endPhase(MarioTickStats.KILL_EVENTS, phaseStart, this.lastFrameEvents.size());
+        }
+    }
+
+    /**
+     * Start or stop collecting the time spent in each phase of update. Clones of the
+     * world don't collect them.
+     *
+     * @param enabled true to collect the stats and false to stop and drop them
+     */
+    public void setTickStatsEnabled(boolean enabled) {
+        if (!enabled) {
+            this.tickStats = null;
+        } else if (this.tickStats == null) {
+            this.tickStats = new MarioTickStats();
+        }
+    }
+
+    /**
+     * Get a snapshot of the stats collected since they got enabled
+     *
+     * @return a copy of the stats or null if they are not enabled
+     */
+    public MarioTickStats getTickStats() {
+        if (this.tickStats == null) {
+            return null;
+        }
+        return this.tickStats.clone();
     }
 
     public void bump(int xTile, int yTile, boolean canBreakBricks) {
         int block = this.level.getBlock(xTile, yTile);
-        ArrayList<TileFeature> features = TileFeature.getTileType(block);
+        int features = TileFeature.getTileFeatures(block);
 
-        if (features.contains(TileFeature.BUMPABLE)) {
+        if ((features & TileFeature.BUMPABLE.getMask()) != 0) {
             bumpInto(xTile, yTile - 1);
             this.addEvent(EventType.BUMP, MarioForwardModel.OBS_QUESTION_BLOCK);
             level.setBlock(xTile, yTile, 14);
             level.setShiftIndex(xTile, yTile, 4);
 
-            if (features.contains(TileFeature.SPECIAL)) {
+            if ((features & TileFeature.SPECIAL.getMask()) != 0) {
                 if (!this.mario.isLarge) {
                     addSprite(new Mushroom(this.visuals, xTile * 16 + 9, yTile * 16 + 8));
                 } else {
                     addSprite(new FireFlower(this.visuals, xTile * 16 + 9, yTile * 16 + 8));
                 }
-            } else if (features.contains(TileFeature.LIFE)) {
+            } else if ((features & TileFeature.LIFE.getMask()) != 0) {
                 addSprite(new LifeMushroom(this.visuals, xTile * 16 + 9, yTile * 16 + 8));
             } else {
                 mario.collectCoin();
@@ -465,7 +792,7 @@ public class MarioWorld {
             }
         }
 
-        if (features.contains(TileFeature.BREAKABLE)) {
+        if ((features & TileFeature.BREAKABLE.getMask()) != 0) {
             bumpInto(xTile, yTile - 1);
             if (canBreakBricks) {
                 this.addEvent(EventType.BUMP, MarioForwardModel.OBS_BRICK);
@@ -486,7 +813,7 @@ public class MarioWorld {
 
     public void bumpInto(int xTile, int yTile) {
         int block = level.getBlock(xTile, yTile);
-        if (TileFeature.getTileType(block).contains(TileFeature.PICKABLE)) {
+        if (TileFeature.hasFeature(block, TileFeature.PICKABLE)) {
             this.addEvent(EventType.COLLECT, block);
             this.mario.collectCoin();
             level.setBlock(xTile, yTile, 0);
@@ -495,8 +822,15 @@ public class MarioWorld {
             }
         }
 
-        for (MarioSprite sprite : sprites) {
-            sprite.bumpCheck(xTile, yTile);
+        // bumps happen while sprites are still moving, the grid can be a few pixels behind so
+        // the query is widened by the most a sprite can move in a tick
+        if (!this.spriteGrid.isValid()) {
+            this.spriteGrid.build(this.sprites, this.cameraX);
+        }
+        this.bumpQuery = this.spriteGrid.fit(this.bumpQuery);
+        int count = this.spriteGrid.query(xTile * 16 - 4 - MAX_SPRITE_MOVE, xTile * 16 + 20 + MAX_SPRITE_MOVE, this.bumpQuery);
+        for (int i = 0; i < count; i++) {
+            this.sprites.get(this.bumpQuery[i]).bumpCheck(xTile, yTile);
         }
     }
 
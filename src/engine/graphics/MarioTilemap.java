@@ -2,23 +2,29 @@ package engine.graphics;
 
 import java.awt.Graphics;
 import java.awt.Image;
-import java.util.ArrayList;
 
 import engine.core.MarioGame;
+import engine.core.MarioLevel;
 import engine.helper.TileFeature;
 
 public class MarioTilemap extends MarioGraphics {
     public Image[][] sheet;
-    public int[][] currentIndeces;
-    public int[][] indexShift;
-    public float[][] moveShift;
+    public MarioLevel level;
+    /**
+     * animation frame of each tile, the tile (x, y) is at x * level.tileHeight + y
+     */
+    public byte[] indexShift;
+    /**
+     * bump offset of each tile, the tile (x, y) is at x * level.tileHeight + y
+     */
+    public float[] moveShift;
     public int animationIndex;
 
-    public MarioTilemap(Image[][] sheet, int[][] currentIndeces) {
+    public MarioTilemap(Image[][] sheet, MarioLevel level) {
         this.sheet = sheet;
-        this.currentIndeces = currentIndeces;
-        this.indexShift = new int[currentIndeces.length][currentIndeces[0].length];
-        this.moveShift = new float[currentIndeces.length][currentIndeces[0].length];
+        this.level = level;
+        this.indexShift = new byte[level.tileWidth * level.tileHeight];
+        this.moveShift = new float[level.tileWidth * level.tileHeight];
         this.animationIndex = 0;
     }
 
@@ -33,25 +39,26 @@ public class MarioTilemap extends MarioGraphics {
 
         for (int xTile = xMin; xTile <= xMax; xTile++) {
             for (int yTile = yMin; yTile <= yMax; yTile++) {
-                if (xTile < 0 || yTile < 0 || xTile >= currentIndeces.length || yTile >= currentIndeces[0].length) {
+                if (xTile < 0 || yTile < 0 || xTile >= level.tileWidth || yTile >= level.tileHeight) {
                     continue;
                 }
-                if (this.moveShift[xTile][yTile] > 0) {
-                    this.moveShift[xTile][yTile] -= 1;
-                    if (this.moveShift[xTile][yTile] < 0) {
-                        this.moveShift[xTile][yTile] = 0;
+                int i = xTile * level.tileHeight + yTile;
+                if (this.moveShift[i] > 0) {
+                    this.moveShift[i] -= 1;
+                    if (this.moveShift[i] < 0) {
+                        this.moveShift[i] = 0;
                     }
                 }
-                ArrayList<TileFeature> features = TileFeature.getTileType(this.currentIndeces[xTile][yTile]);
-                if (features.contains(TileFeature.ANIMATED)) {
+                int tile = this.level.getBlock(xTile, yTile);
+                if (TileFeature.hasFeature(tile, TileFeature.ANIMATED)) {
                     if (this.animationIndex == 0) {
-                        this.indexShift[xTile][yTile] = (this.indexShift[xTile][yTile] + 1) % 3;
+                        this.indexShift[i] = (byte) ((this.indexShift[i] + 1) % 3);
                     }
                 } else {
-                    this.indexShift[xTile][yTile] = 0;
+                    this.indexShift[i] = 0;
                 }
-                int index = currentIndeces[xTile][yTile] + indexShift[xTile][yTile];
-                int move = (int) moveShift[xTile][yTile];
+                int index = tile + indexShift[i];
+                int move = (int) moveShift[i];
                 Image img = sheet[index % 8][index / 8];
                 og.drawImage(img, xTile * 16 - x, yTile * 16 - y - move, null);
             }
@@ -14,6 +14,71 @@ public enum TileFeature {
     ANIMATED,
     SPAWNER;
 
+    /**
+     * feature bitmask for every tile index, built once from getTileType
+     */
+    private static final int[] tileFeatures = new int[256];
+
+    static {
+        for (int i = 0; i < tileFeatures.length; i++) {
+            for (TileFeature feature : getTileType(i)) {
+                tileFeatures[i] |= feature.getMask();
+            }
+        }
+    }
+
+    /**
+     * Get the bit that represent this feature in the tile feature bitmask
+     *
+     * @return a bitmask with only this feature set
+     */
+    public int getMask() {
+        return 1 << this.ordinal();
+    }
+
+    /**
+     * Get all the features of a tile as a bitmask without allocating
+     *
+     * @param index the tile index
+     * @return bitmask of the tile features where each feature is at its getMask() bit
+     */
+    public static int getTileFeatures(int index) {
+        if (index < 0 || index >= tileFeatures.length) {
+            return 0;
+        }
+        return tileFeatures[index];
+    }
+
+    /**
+     * Check if a tile has a certain feature without allocating
+     *
+     * @param index   the tile index
+     * @param feature the feature to check for
+     * @return true if the tile has that feature and false otherwise
+     */
+    public static boolean hasFeature(int index, TileFeature feature) {
+        return (getTileFeatures(index) & feature.getMask()) != 0;
+    }
+
+    /**
+     * Check if a tile blocks a sprite moving with a certain speed
+     *
+     * @param index the tile index
+     * @param xa    the horizontal speed of the sprite
+     * @param ya    the vertical speed of the sprite
+     * @return true if the tile blocks the movement and false otherwise
+     */
+    public static boolean isBlocking(int index, float xa, float ya) {
+        int features = getTileFeatures(index);
+        if ((features & BLOCK_ALL.getMask()) != 0) {
+            return true;
+        }
+        if (ya < 0 && (features & BLOCK_UPPER.getMask()) != 0) {
+            return true;
+        }
+        return ya > 0 && (features & BLOCK_LOWER.getMask()) != 0;
+    }
+
     public static ArrayList<TileFeature> getTileType(int index) {
         ArrayList<TileFeature> features = new ArrayList<>();
         switch (index) {
@@ -0,0 +1,60 @@
+package engine.search;
+
+import engine.core.MarioForwardModel;
+import engine.helper.MarioActions;
+
+/**
+ * The actions a search tries from each state
+ */
+public interface ActionSet {
+    /**
+     * the moves most planning agents use: running right with all the jump and speed
+     * combinations, walking or jumping left and jumping in place
+     */
+    ActionSet STANDARD = of(
+            createAction(false, true, false, false),
+            createAction(false, true, true, false),
+            createAction(false, true, false, true),
+            createAction(false, true, true, true),
+            createAction(true, false, false, false),
+            createAction(true, false, false, true),
+            createAction(false, false, false, true),
+            createAction(false, false, false, false));
+
+    /**
+     * Get the actions to try from a state. The returned arrays end up in the plans of the
+     * search so they must not be changed afterwards.
+     *
+     * @param model the state to search from, it must not be advanced
+     * @return an array of the state of the buttons for each action
+     */
+    boolean[][] getActions(MarioForwardModel model);
+
+    /**
+     * Get an action set that tries the same actions from every state
+     *
+     * @param actions the state of the buttons of each action
+     * @return the action set
+     */
+    static ActionSet of(boolean[]... actions) {
+        return model -> actions;
+    }
+
+    /**
+     * Create the state of the buttons of an action
+     *
+     * @param left  true to press left
+     * @param right true to press right
+     * @param speed true to press speed
+     * @param jump  true to press jump
+     * @return an array of the state of the buttons on the controller
+     */
+    static boolean[] createAction(boolean left, boolean right, boolean speed, boolean jump) {
+        boolean[] action = new boolean[MarioActions.numberOfActions()];
+        action[MarioActions.LEFT.getValue()] = left;
+        action[MarioActions.RIGHT.getValue()] = right;
+        action[MarioActions.SPEED.getValue()] = speed;
+        action[MarioActions.JUMP.getValue()] = jump;
+        return action;
+    }
+}
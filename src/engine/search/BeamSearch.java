@@ -0,0 +1,73 @@
+package engine.search;
+
+import java.util.ArrayList;
+
+import engine.core.MarioForwardModel;
+import engine.core.MarioTimer;
+
+/**
+ * Expands the tree one level at a time and only keeps the best nodes of each level
+ */
+public class BeamSearch extends Search {
+    private final ScoreQueue queue = new ScoreQueue();
+    private final int width;
+    private int[] layer;
+
+    /**
+     * Create a beam search
+     *
+     * @param actionSet the actions tried from each state
+     * @param heuristic the score of the states
+     * @param stateKey  the key of the states used to skip states already reached, or null to keep them all
+     * @param width     the number of nodes kept on each level, at least 1
+     */
+    public BeamSearch(ActionSet actionSet, Heuristic heuristic, StateKey stateKey, int width) {
+        super(actionSet, heuristic, stateKey);
+        if (width < 1) {
+            throw new IllegalArgumentException("the beam needs to keep at least one node");
+        }
+        this.width = width;
+        this.layer = new int[width];
+    }
+
+    @Override
+    public ArrayList<boolean[]> search(MarioForwardModel model, MarioTimer timer) {
+        int root = this.startSearch(model);
+        int best = root;
+        int layerSize = 0;
+        if (this.isOpen(root)) {
+            this.layer[layerSize++] = root;
+        }
+        while (layerSize > 0 && timer.getRemainingTime() > 0) {
+            this.queue.clear();
+            for (int i = 0; i < layerSize && timer.getRemainingTime() > 0; i++) {
+                int node = this.layer[i];
+                for (boolean[] action : this.actionSet.getActions(this.tree.getModel(node))) {
+                    int child = this.expand(node, action);
+                    if (child < 0) {
+                        continue;
+                    }
+                    if (this.tree.getScore(child) > this.tree.getScore(best)) {
+                        best = child;
+                    }
+                    if (this.isOpen(child)) {
+                        this.queue.add(child, this.tree.getScore(child));
+                    } else {
+                        this.tree.releaseModel(child);
+                    }
+                }
+                this.tree.releaseModel(node);
+            }
+            layerSize = 0;
+            while (this.queue.size() > 0) {
+                int node = this.queue.poll();
+                if (layerSize < this.width) {
+                    this.layer[layerSize++] = node;
+                } else {
+                    this.tree.releaseModel(node);
+                }
+            }
+        }
+        return this.tree.getPlan(best, this.repetitions);
+    }
+}
@@ -0,0 +1,47 @@
+package engine.search;
+
+import java.util.ArrayList;
+
+import engine.core.MarioForwardModel;
+import engine.core.MarioTimer;
+
+/**
+ * Always expands the open node with the highest score. The heuristic gets the depth of the
+ * nodes so it can add the cost of the path to make it an A* search.
+ */
+public class BestFirstSearch extends Search {
+    private final ScoreQueue queue = new ScoreQueue();
+
+    public BestFirstSearch(ActionSet actionSet, Heuristic heuristic, StateKey stateKey) {
+        super(actionSet, heuristic, stateKey);
+    }
+
+    @Override
+    public ArrayList<boolean[]> search(MarioForwardModel model, MarioTimer timer) {
+        int root = this.startSearch(model);
+        int best = root;
+        this.queue.clear();
+        if (this.isOpen(root)) {
+            this.queue.add(root, this.tree.getScore(root));
+        }
+        while (this.queue.size() > 0 && timer.getRemainingTime() > 0) {
+            int node = this.queue.poll();
+            for (boolean[] action : this.actionSet.getActions(this.tree.getModel(node))) {
+                int child = this.expand(node, action);
+                if (child < 0) {
+                    continue;
+                }
+                if (this.tree.getScore(child) > this.tree.getScore(best)) {
+                    best = child;
+                }
+                if (this.isOpen(child)) {
+                    this.queue.add(child, this.tree.getScore(child));
+                } else {
+                    this.tree.releaseModel(child);
+                }
+            }
+            this.tree.releaseModel(node);
+        }
+        return this.tree.getPlan(best, this.repetitions);
+    }
+}
@@ -0,0 +1,32 @@
+package engine.search;
+
+import engine.core.MarioForwardModel;
+import engine.helper.GameStatus;
+
+/**
+ * Scores the states reached by a search, the searches look for the highest score
+ */
+public interface Heuristic {
+    /**
+     * the distance covered with a bonus for each power up of mario and for winning, and a
+     * penalty for losing
+     */
+    Heuristic PROGRESS = (model, depth) -> {
+        float score = model.getMarioX() + 1000 * model.getMarioMode();
+        if (model.getGameStatus() == GameStatus.WIN) {
+            score += 100000;
+        } else if (model.getGameStatus() != GameStatus.RUNNING) {
+            score -= 100000;
+        }
+        return score;
+    };
+
+    /**
+     * Score a state
+     *
+     * @param model the state to score, it must not be advanced
+     * @param depth the number of actions between the root of the search and this state
+     * @return the score of the state, higher is better
+     */
+    float getScore(MarioForwardModel model, int depth);
+}
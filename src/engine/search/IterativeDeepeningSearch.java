@@ -0,0 +1,83 @@
+package engine.search;
+
+import java.util.ArrayList;
+
+import engine.core.MarioForwardModel;
+import engine.core.MarioTimer;
+import engine.helper.GameStatus;
+
+/**
+ * Depth first searches with a depth limit that grows by one until maxDepth or the end of
+ * the time. The whole search runs on one model that goes back to each node with a rollback
+ * instead of keeping a copy of the world per node.
+ */
+public class IterativeDeepeningSearch extends Search {
+    private boolean[][] path = new boolean[0][];
+    private ArrayList<boolean[]> bestPlan;
+    private float bestScore;
+
+    public IterativeDeepeningSearch(ActionSet actionSet, Heuristic heuristic, StateKey stateKey) {
+        super(actionSet, heuristic, stateKey);
+    }
+
+    @Override
+    public ArrayList<boolean[]> search(MarioForwardModel model, MarioTimer timer) {
+        MarioForwardModel state = this.tree.getPool().borrow(model);
+        if (this.path.length < this.maxDepth) {
+            this.path = new boolean[this.maxDepth][];
+        }
+        this.bestPlan = new ArrayList<>();
+        this.bestScore = this.heuristic.getScore(state, 0);
+        if (state.getGameStatus() == GameStatus.RUNNING) {
+            for (int limit = 1; limit <= this.maxDepth; limit++) {
+                // the states are only skipped when they are reached again at the same depth
+                this.visited.clear();
+                if (!this.searchDepth(state, 0, limit, timer)) {
+                    break;
+                }
+            }
+        }
+        this.tree.getPool().release(state);
+        return this.bestPlan;
+    }
+
+    /**
+     * Try every action from the current state of the model and go deeper until the limit
+     *
+     * @return false if the time ran out
+     */
+    private boolean searchDepth(MarioForwardModel state, int depth, int limit, MarioTimer timer) {
+        for (boolean[] action : this.actionSet.getActions(state)) {
+            if (timer.getRemainingTime() <= 0) {
+                return false;
+            }
+            int mark = state.checkpoint();
+            for (int i = 0; i < this.repetitions && state.getGameStatus() == GameStatus.RUNNING; i++) {
+                state.advance(action);
+            }
+            this.expandedNodes += 1;
+            this.path[depth] = action;
+            boolean finished = true;
+            if (this.stateKey == null || this.visited.add(this.stateKey.getKey(state) * 31 + depth)) {
+                float score = this.heuristic.getScore(state, depth + 1);
+                if (score > this.bestScore) {
+                    this.bestScore = score;
+                    this.bestPlan = new ArrayList<>();
+                    for (int d = 0; d <= depth; d++) {
+                        for (int i = 0; i < this.repetitions; i++) {
+                            this.bestPlan.add(this.path[d]);
+                        }
+                    }
+                }
+                if (depth + 1 < limit && state.getGameStatus() == GameStatus.RUNNING) {
+                    finished = this.searchDepth(state, depth + 1, limit, timer);
+                }
+            }
+            state.rollback(mark);
+            if (!finished) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
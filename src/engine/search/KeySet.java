@@ -0,0 +1,83 @@
+package engine.search;
+
+import java.util.Arrays;
+
+/**
+ * A set of state keys stored in primitive arrays with open addressing
+ */
+public class KeySet {
+    private long[] keys = new long[64];
+    private boolean[] used = new boolean[64];
+    private int size;
+
+    /**
+     * Add a key to the set
+     *
+     * @param key the key to add
+     * @return true if the key was not in the set
+     */
+    public boolean add(long key) {
+        if ((this.size + 1) * 2 > this.keys.length) {
+            this.grow();
+        }
+        int mask = this.keys.length - 1;
+        int index = hash(key) & mask;
+        while (this.used[index]) {
+            if (this.keys[index] == key) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        this.used[index] = true;
+        this.keys[index] = key;
+        this.size += 1;
+        return true;
+    }
+
+    /**
+     * Check if a key is in the set
+     *
+     * @param key the key to look for
+     * @return true if the key was added since the last clear
+     */
+    public boolean contains(long key) {
+        int mask = this.keys.length - 1;
+        int index = hash(key) & mask;
+        while (this.used[index]) {
+            if (this.keys[index] == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        if (this.size > 0) {
+            Arrays.fill(this.used, false);
+            this.size = 0;
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void grow() {
+        long[] oldKeys = this.keys;
+        boolean[] oldUsed = this.used;
+        this.keys = new long[oldKeys.length * 2];
+        this.used = new boolean[oldKeys.length * 2];
+        this.size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                this.add(oldKeys[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package engine.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import engine.core.MarioForwardModel;
+import engine.core.MarioTimer;
+import engine.helper.GameStatus;
+
+/**
+ * UCT search: the tree is walked down with the UCB1 formula, the first visit of a node
+ * expands all its actions and every visit is scored by a random rollout. The scores of
+ * the heuristic are normalized by the lowest and highest rollout scores seen so far.
+ */
+public class MonteCarloTreeSearch extends Search {
+    /**
+     * the weight of the exploration term of UCB1
+     */
+    public float exploration = 0.3f;
+    /**
+     * the number of random actions played by each rollout
+     */
+    public int rolloutDepth = 2;
+
+    private final Random random;
+    private int[] visits = new int[256];
+    private double[] values = new double[256];
+    private int[] firstChild = new int[256];
+    private int[] childCount = new int[256];
+    private boolean[] expanded = new boolean[256];
+    private float minValue;
+    private float maxValue;
+
+    /**
+     * Create a search, the state keys are not used since the nodes of UCT are paths
+     *
+     * @param actionSet the actions tried from each state and in the rollouts
+     * @param heuristic the score of the states at the end of the rollouts
+     * @param random    the random number generator of the rollouts
+     */
+    public MonteCarloTreeSearch(ActionSet actionSet, Heuristic heuristic, Random random) {
+        super(actionSet, heuristic, null);
+        this.random = random;
+    }
+
+    @Override
+    public ArrayList<boolean[]> search(MarioForwardModel model, MarioTimer timer) {
+        int root = this.startSearch(model);
+        this.ensureCapacity(1);
+        this.resetNode(root);
+        this.minValue = Float.POSITIVE_INFINITY;
+        this.maxValue = Float.NEGATIVE_INFINITY;
+        if (!this.isOpen(root)) {
+            return new ArrayList<>();
+        }
+        while (timer.getRemainingTime() > 0) {
+            int node = root;
+            while (this.expanded[node] && this.childCount[node] > 0) {
+                node = this.selectChild(node);
+            }
+            if (!this.expanded[node] && this.isOpen(node)) {
+                node = this.expandAll(node);
+            }
+            float value = this.rollout(node);
+            this.minValue = Math.min(this.minValue, value);
+            this.maxValue = Math.max(this.maxValue, value);
+            while (node >= 0) {
+                this.visits[node] += 1;
+                this.values[node] += value;
+                node = this.tree.getParent(node);
+            }
+        }
+        return this.getPlan(root);
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > this.visits.length) {
+            int capacity = Math.max(size, this.visits.length * 2);
+            this.visits = Arrays.copyOf(this.visits, capacity);
+            this.values = Arrays.copyOf(this.values, capacity);
+            this.firstChild = Arrays.copyOf(this.firstChild, capacity);
+            this.childCount = Arrays.copyOf(this.childCount, capacity);
+            this.expanded = Arrays.copyOf(this.expanded, capacity);
+        }
+    }
+
+    private void resetNode(int node) {
+        this.visits[node] = 0;
+        this.values[node] = 0;
+        this.childCount[node] = 0;
+        this.expanded[node] = false;
+    }
+
+    /**
+     * Create all the children of a node, they are next to each other in the tree
+     *
+     * @return the first child or the node itself if it has no children
+     */
+    private int expandAll(int node) {
+        boolean[][] actions = this.actionSet.getActions(this.tree.getModel(node));
+        this.ensureCapacity(this.tree.size() + actions.length);
+        this.firstChild[node] = this.tree.size();
+        for (boolean[] action : actions) {
+            this.resetNode(this.expand(node, action));
+        }
+        this.childCount[node] = actions.length;
+        this.expanded[node] = true;
+        this.tree.releaseModel(node);
+        return actions.length > 0 ? this.firstChild[node] : node;
+    }
+
+    private int selectChild(int node) {
+        double logVisits = Math.log(this.visits[node]);
+        float range = this.maxValue - this.minValue;
+        int best = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = this.firstChild[node]; child < this.firstChild[node] + this.childCount[node]; child++) {
+            if (this.visits[child] == 0) {
+                return child;
+            }
+            double mean = this.values[child] / this.visits[child];
+            double normalized = range > 0 ? (mean - this.minValue) / range : 0.5;
+            double value = normalized + this.exploration * Math.sqrt(logVisits / this.visits[child]);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Play random actions from a node and score the state at the end
+     */
+    private float rollout(int node) {
+        MarioForwardModel start = this.tree.getModel(node);
+        if (start == null) {
+            // the node was expanded and has no children, or the game ended there
+            return this.tree.getScore(node);
+        }
+        MarioForwardModel model = this.tree.getPool().borrow(start);
+        int depth = this.tree.getDepth(node);
+        for (int step = 0; step < this.rolloutDepth && model.getGameStatus() == GameStatus.RUNNING; step++) {
+            boolean[][] actions = this.actionSet.getActions(model);
+            if (actions.length == 0) {
+                break;
+            }
+            boolean[] action = actions[this.random.nextInt(actions.length)];
+            for (int i = 0; i < this.repetitions && model.getGameStatus() == GameStatus.RUNNING; i++) {
+                model.advance(action);
+            }
+            depth += 1;
+        }
+        float score = this.heuristic.getScore(model, depth);
+        this.tree.getPool().release(model);
+        return score;
+    }
+
+    /**
+     * Follow the most visited children from the root
+     */
+    private ArrayList<boolean[]> getPlan(int root) {
+        int node = root;
+        while (this.expanded[node] && this.childCount[node] > 0) {
+            int best = -1;
+            for (int child = this.firstChild[node]; child < this.firstChild[node] + this.childCount[node]; child++) {
+                if (this.visits[child] > 0 && (best < 0 || this.visits[child] > this.visits[best])) {
+                    best = child;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            node = best;
+        }
+        return this.tree.getPlan(node, this.repetitions);
+    }
+}
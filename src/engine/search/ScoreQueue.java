@@ -0,0 +1,99 @@
+package engine.search;
+
+import java.util.Arrays;
+
+/**
+ * A binary heap of node indices ordered by score stored in primitive arrays. The node with
+ * the highest score comes first and ties go to the node with the lowest index, so the
+ * nodes created first win.
+ */
+public class ScoreQueue {
+    private int[] nodes = new int[64];
+    private float[] scores = new float[64];
+    private int size;
+
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Add a node, a NaN score goes after every other score
+     *
+     * @param node  the index of the node
+     * @param score the score of the node
+     */
+    public void add(int node, float score) {
+        if (this.size == this.nodes.length) {
+            this.nodes = Arrays.copyOf(this.nodes, this.size * 2);
+            this.scores = Arrays.copyOf(this.scores, this.size * 2);
+        }
+        int index = this.size++;
+        this.nodes[index] = node;
+        this.scores[index] = score != score ? Float.NEGATIVE_INFINITY : score;
+        while (index > 0) {
+            int parent = (index - 1) >> 1;
+            if (!this.isBefore(index, parent)) {
+                break;
+            }
+            this.swap(index, parent);
+            index = parent;
+        }
+    }
+
+    /**
+     * Get the highest score without removing its node
+     *
+     * @return the score of the next node or negative infinity if the queue is empty
+     */
+    public float peekScore() {
+        return this.size == 0 ? Float.NEGATIVE_INFINITY : this.scores[0];
+    }
+
+    /**
+     * Remove the node with the highest score
+     *
+     * @return the index of the node or -1 if the queue is empty
+     */
+    public int poll() {
+        if (this.size == 0) {
+            return -1;
+        }
+        int best = this.nodes[0];
+        this.size -= 1;
+        this.nodes[0] = this.nodes[this.size];
+        this.scores[0] = this.scores[this.size];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= this.size) {
+                break;
+            }
+            if (child + 1 < this.size && this.isBefore(child + 1, child)) {
+                child += 1;
+            }
+            if (!this.isBefore(child, index)) {
+                break;
+            }
+            this.swap(index, child);
+            index = child;
+        }
+        return best;
+    }
+
+    private boolean isBefore(int a, int b) {
+        return this.scores[a] > this.scores[b] || (this.scores[a] == this.scores[b] && this.nodes[a] < this.nodes[b]);
+    }
+
+    private void swap(int a, int b) {
+        int node = this.nodes[a];
+        float score = this.scores[a];
+        this.nodes[a] = this.nodes[b];
+        this.scores[a] = this.scores[b];
+        this.nodes[b] = node;
+        this.scores[b] = score;
+    }
+}
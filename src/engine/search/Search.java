@@ -0,0 +1,110 @@
+package engine.search;
+
+import java.util.ArrayList;
+
+import engine.core.MarioForwardModel;
+import engine.core.MarioForwardModelPool;
+import engine.core.MarioTimer;
+import engine.helper.GameStatus;
+
+/**
+ * Base of the search drivers. A search is set up with the actions it tries, the heuristic
+ * that scores the states and an optional state key to skip the states it already reached,
+ * and returns the plan to the best state it found before the timer runs out.
+ */
+public abstract class Search {
+    protected final ActionSet actionSet;
+    protected final Heuristic heuristic;
+    protected final StateKey stateKey;
+    protected final SearchTree tree;
+    protected final KeySet visited = new KeySet();
+    protected long expandedNodes;
+
+    /**
+     * number of ticks each action of the plan is held
+     */
+    public int repetitions = 2;
+    /**
+     * the deepest level of the tree that is expanded
+     */
+    public int maxDepth = 20;
+
+    /**
+     * Create a search with its own pool of models
+     *
+     * @param actionSet the actions tried from each state
+     * @param heuristic the score of the states
+     * @param stateKey  the key of the states used to skip states already reached, or null to keep them all
+     */
+    protected Search(ActionSet actionSet, Heuristic heuristic, StateKey stateKey) {
+        this.actionSet = actionSet;
+        this.heuristic = heuristic;
+        this.stateKey = stateKey;
+        this.tree = new SearchTree(new MarioForwardModelPool());
+    }
+
+    /**
+     * Search from a state until the timer runs out or the search is done
+     *
+     * @param model the state to search from, it is not changed
+     * @param timer the time given to the search
+     * @return the actions of every tick from the state to the best state found, empty if
+     * no state scored better than the start
+     */
+    public abstract ArrayList<boolean[]> search(MarioForwardModel model, MarioTimer timer);
+
+    /**
+     * Get the number of nodes the search simulated
+     *
+     * @return the number of expanded nodes since the search was created
+     */
+    public long getExpandedNodes() {
+        return this.expandedNodes;
+    }
+
+    /**
+     * Clear the tree and the reached states and create the scored root
+     *
+     * @param model the state to search from
+     * @return the index of the root
+     */
+    protected int startSearch(MarioForwardModel model) {
+        int root = this.tree.addRoot(model);
+        this.visited.clear();
+        if (this.stateKey != null) {
+            this.visited.add(this.stateKey.getKey(model));
+        }
+        this.tree.setScore(root, this.heuristic.getScore(model, 0));
+        return root;
+    }
+
+    /**
+     * Create and score the child of a node
+     *
+     * @param parent the index of the node to play from
+     * @param action the state of the buttons
+     * @return the index of the child or -1 if its state was already reached
+     */
+    protected int expand(int parent, boolean[] action) {
+        int child = this.tree.addChild(parent, action, this.repetitions);
+        this.expandedNodes += 1;
+        MarioForwardModel model = this.tree.getModel(child);
+        if (this.stateKey != null && !this.visited.add(this.stateKey.getKey(model))) {
+            this.tree.releaseModel(child);
+            return -1;
+        }
+        this.tree.setScore(child, this.heuristic.getScore(model, this.tree.getDepth(child)));
+        return child;
+    }
+
+    /**
+     * Check if a node can be expanded
+     *
+     * @param node the index of the node
+     * @return true if the node has its model, the game is running and the node is above maxDepth
+     */
+    protected boolean isOpen(int node) {
+        MarioForwardModel model = this.tree.getModel(node);
+        return model != null && model.getGameStatus() == GameStatus.RUNNING && this.tree.getDepth(node) < this.maxDepth;
+    }
+}
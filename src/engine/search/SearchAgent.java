@@ -0,0 +1,58 @@
+package engine.search;
+
+import java.util.ArrayList;
+
+import engine.core.MarioAgent;
+import engine.core.MarioForwardModel;
+import engine.core.MarioTimer;
+import engine.helper.MarioActions;
+
+/**
+ * An agent that searches on every tick and plays the first action of the plan. A new
+ * agent only needs a heuristic, and optionally its own actions and state key, to get one
+ * of the search drivers.
+ */
+public class SearchAgent implements MarioAgent {
+    private final Search search;
+    private final String name;
+
+    /**
+     * Create an agent that runs a best first search on the progress of mario
+     */
+    public SearchAgent() {
+        this(new BestFirstSearch(ActionSet.STANDARD, Heuristic.PROGRESS, StateKey.marioCell(4)), "SearchAgent");
+    }
+
+    /**
+     * Create an agent on a search
+     *
+     * @param search the search that plans the actions
+     * @param name   the name of the agent
+     */
+    public SearchAgent(Search search, String name) {
+        this.search = search;
+        this.name = name;
+    }
+
+    public Search getSearch() {
+        return this.search;
+    }
+
+    @Override
+    public void initialize(MarioForwardModel model, MarioTimer timer) {
+    }
+
+    @Override
+    public boolean[] getActions(MarioForwardModel model, MarioTimer timer) {
+        ArrayList<boolean[]> plan = this.search.search(model, timer);
+        if (plan.isEmpty()) {
+            return new boolean[MarioActions.numberOfActions()];
+        }
+        return plan.get(0).clone();
+    }
+
+    @Override
+    public String getAgentName() {
+        return this.name;
+    }
+}
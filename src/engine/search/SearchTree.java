@@ -0,0 +1,165 @@
+package engine.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import engine.core.MarioForwardModel;
+import engine.core.MarioForwardModelPool;
+import engine.helper.GameStatus;
+
+/**
+ * The nodes of a search stored in parallel arrays and identified by their index. Every node
+ * borrows the model of its state from a pool, the searches give it back as soon as the
+ * node won't be expanded anymore so the models are reused by the next nodes.
+ */
+public class SearchTree {
+    private final MarioForwardModelPool pool;
+    private int size;
+    private int[] parents = new int[256];
+    private int[] depths = new int[256];
+    private float[] scores = new float[256];
+    private boolean[][] actions = new boolean[256][];
+    private MarioForwardModel[] models = new MarioForwardModel[256];
+
+    /**
+     * Create an empty tree
+     *
+     * @param pool the pool the models of the nodes are borrowed from
+     */
+    public SearchTree(MarioForwardModelPool pool) {
+        this.pool = pool;
+    }
+
+    public MarioForwardModelPool getPool() {
+        return this.pool;
+    }
+
+    /**
+     * Get the number of nodes
+     *
+     * @return the number of nodes created since the last root
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Remove all the nodes and give their models back to the pool
+     */
+    public void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.releaseModel(i);
+            this.actions[i] = null;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Clear the tree and create its root
+     *
+     * @param model the state to search from, it is copied
+     * @return the index of the root, always 0
+     */
+    public int addRoot(MarioForwardModel model) {
+        this.clear();
+        return this.add(-1, null, this.pool.borrow(model), 0);
+    }
+
+    /**
+     * Create a node by playing an action from the state of another node
+     *
+     * @param parent      the index of the node to play from, it must still have its model
+     * @param action      the state of the buttons
+     * @param repetitions the number of ticks the action is held, it stops early if the game ends
+     * @return the index of the new node
+     */
+    public int addChild(int parent, boolean[] action, int repetitions) {
+        MarioForwardModel model = this.pool.borrow(this.models[parent]);
+        for (int i = 0; i < repetitions && model.getGameStatus() == GameStatus.RUNNING; i++) {
+            model.advance(action);
+        }
+        return this.add(parent, action, model, this.depths[parent] + 1);
+    }
+
+    private int add(int parent, boolean[] action, MarioForwardModel model, int depth) {
+        if (this.size == this.parents.length) {
+            int capacity = this.size * 2;
+            this.parents = Arrays.copyOf(this.parents, capacity);
+            this.depths = Arrays.copyOf(this.depths, capacity);
+            this.scores = Arrays.copyOf(this.scores, capacity);
+            this.actions = Arrays.copyOf(this.actions, capacity);
+            this.models = Arrays.copyOf(this.models, capacity);
+        }
+        int node = this.size++;
+        this.parents[node] = parent;
+        this.depths[node] = depth;
+        this.scores[node] = 0;
+        this.actions[node] = action;
+        this.models[node] = model;
+        return node;
+    }
+
+    /**
+     * Get the state of a node
+     *
+     * @param node the index of the node
+     * @return the model of the node or null if it was released, it must not be advanced
+     */
+    public MarioForwardModel getModel(int node) {
+        return this.models[node];
+    }
+
+    /**
+     * Give the model of a node back to the pool, the node can't be expanded after that
+     *
+     * @param node the index of the node
+     */
+    public void releaseModel(int node) {
+        if (this.models[node] != null) {
+            this.pool.release(this.models[node]);
+            this.models[node] = null;
+        }
+    }
+
+    public int getParent(int node) {
+        return this.parents[node];
+    }
+
+    public int getDepth(int node) {
+        return this.depths[node];
+    }
+
+    public boolean[] getAction(int node) {
+        return this.actions[node];
+    }
+
+    public float getScore(int node) {
+        return this.scores[node];
+    }
+
+    public void setScore(int node, float score) {
+        this.scores[node] = score;
+    }
+
+    /**
+     * Get the actions that lead from the root to a node
+     *
+     * @param node        the index of the node
+     * @param repetitions the number of ticks each action is held
+     * @return the actions of every tick from the root to the node
+     */
+    public ArrayList<boolean[]> getPlan(int node, int repetitions) {
+        ArrayList<boolean[]> plan = new ArrayList<>();
+        while (this.parents[node] >= 0) {
+            for (int i = 0; i < repetitions; i++) {
+                plan.add(this.actions[node]);
+            }
+            node = this.parents[node];
+        }
+        ArrayList<boolean[]> ordered = new ArrayList<>(plan.size());
+        for (int i = plan.size() - 1; i >= 0; i--) {
+            ordered.add(plan.get(i));
+        }
+        return ordered;
+    }
+}
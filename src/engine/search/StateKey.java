@@ -0,0 +1,33 @@
+package engine.search;
+
+import engine.core.MarioForwardModel;
+
+/**
+ * Summarizes a state into a key so the searches can skip states they already reached.
+ * Two states with the same key are treated as the same state.
+ */
+public interface StateKey {
+    /**
+     * Get the key of a state
+     *
+     * @param model the state, it must not be advanced
+     * @return the key of the state
+     */
+    long getKey(MarioForwardModel model);
+
+    /**
+     * Get a key made of the cell of mario position, his speed rounded down, his mode and
+     * whether he is on the ground and can jump
+     *
+     * @param cellSize the size of the cells in pixels, 16 is one tile
+     * @return the state key
+     */
+    static StateKey marioCell(int cellSize) {
+        return model -> ((long) (int) Math.floor(model.getMarioX() / cellSize) << 32)
+                | (((int) Math.floor(model.getMarioY() / cellSize) & 0xFFFFFL) << 12)
+                | (((int) Math.floor(model.getMarioXVelocity()) & 0xFFL) << 4)
+                | (model.getMarioMode() << 2)
+                | (model.mayMarioJump() ? 2 : 0)
+                | (model.isMarioOnGround() ? 1 : 0);
+    }
+}
@@ -59,6 +59,7 @@ public class Enemy extends MarioSprite {
         e.xa = this.xa;
         e.ya = this.ya;
         e.initialCode = this.initialCode;
+        e.spawnId = this.spawnId;
         e.width = this.width;
         e.height = this.height;
         e.onGround = this.onGround;
@@ -68,6 +69,18 @@ public class Enemy extends MarioSprite {
         return e;
     }
 
+    @Override
+    public void copyInto(MarioSprite target) {
+        super.copyInto(target);
+        Enemy e = (Enemy) target;
+        e.onGround = this.onGround;
+        e.winged = this.winged;
+        e.avoidCliffs = this.avoidCliffs;
+        e.noFireballDeath = this.noFireballDeath;
+        e.runTime = 0;
+        e.wingTime = 0;
+    }
+
     public void collideCheck() {
         if (!this.alive) {
             return;
@@ -85,9 +98,13 @@ public class Enemy extends MarioSprite {
                         ya = 0;
                     } else {
                         if (type == SpriteType.GREEN_KOOPA || type == SpriteType.GREEN_KOOPA_WINGED) {
-                            this.world.addSprite(new Shell(this.graphics != null, x, y, 1, this.initialCode));
+                            Shell shell = new Shell(this.graphics != null, x, y, 1, this.initialCode);
+                            shell.spawnId = this.spawnId;
+                            this.world.addSprite(shell);
                         } else if (type == SpriteType.RED_KOOPA || type == SpriteType.RED_KOOPA_WINGED) {
-                            this.world.addSprite(new Shell(this.graphics != null, x, y, 0, this.initialCode));
+                            Shell shell = new Shell(this.graphics != null, x, y, 0, this.initialCode);
+                            shell.spawnId = this.spawnId;
+                            this.world.addSprite(shell);
                         } else if (type == SpriteType.GOOMBA || type == SpriteType.GOOMBA_WINGED) {
                             if (this.graphics != null) {
                                 this.world.addEffect(new SquishEffect(this.x, this.y - 7));
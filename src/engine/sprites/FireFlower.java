@@ -33,6 +33,7 @@ public class FireFlower extends MarioSprite {
         f.xa = this.xa;
         f.ya = this.ya;
         f.initialCode = this.initialCode;
+        f.spawnId = this.spawnId;
         f.width = this.width;
         f.height = this.height;
         f.facing = this.facing;
@@ -40,6 +41,13 @@ public class FireFlower extends MarioSprite {
         return f;
     }
 
+    @Override
+    public void copyInto(MarioSprite target) {
+        super.copyInto(target);
+        FireFlower f = (FireFlower) target;
+        f.life = this.life;
+    }
+
     @Override
     public void collideCheck() {
         if (!this.alive) {
@@ -38,12 +38,21 @@ public class Fireball extends MarioSprite {
         f.xa = this.xa;
         f.ya = this.ya;
         f.initialCode = this.initialCode;
+        f.spawnId = this.spawnId;
         f.width = this.width;
         f.height = this.height;
         f.onGround = this.onGround;
         return f;
     }
 
+    @Override
+    public void copyInto(MarioSprite target) {
+        super.copyInto(target);
+        Fireball f = (Fireball) target;
+        f.onGround = this.onGround;
+        f.anim = 0;
+    }
+
     private boolean move(float xa, float ya) {
         while (xa > 8) {
             if (!move(8, 0))
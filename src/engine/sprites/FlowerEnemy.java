@@ -27,6 +27,7 @@ public class FlowerEnemy extends Enemy {
         sprite.xa = this.xa;
         sprite.ya = this.ya;
         sprite.initialCode = this.initialCode;
+        sprite.spawnId = this.spawnId;
         sprite.width = this.width;
         sprite.height = this.height;
         sprite.onGround = this.onGround;
@@ -38,6 +39,15 @@ public class FlowerEnemy extends Enemy {
         return sprite;
     }
 
+    @Override
+    public void copyInto(MarioSprite target) {
+        super.copyInto(target);
+        FlowerEnemy sprite = (FlowerEnemy) target;
+        sprite.yStart = yStart;
+        sprite.waitTime = waitTime;
+        sprite.tick = 0;
+    }
+
     @Override
     public void update() {
         if (!this.alive) {
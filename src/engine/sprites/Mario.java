@@ -22,6 +22,7 @@ public class Mario extends MarioSprite {
     private float marioFrameSpeed = 0;
     private boolean oldLarge, oldFire = false;
     private MarioImage graphics = null;
+    private boolean[] copiedActions = null;
 
     // stats
     private float xJumpStart = -100;
@@ -47,6 +48,7 @@ public class Mario extends MarioSprite {
         sprite.xa = this.xa;
         sprite.ya = this.ya;
         sprite.initialCode = this.initialCode;
+        sprite.spawnId = this.spawnId;
         sprite.width = this.width;
         sprite.height = this.height;
         sprite.facing = this.facing;
@@ -69,6 +71,33 @@ public class Mario extends MarioSprite {
         return sprite;
     }
 
+    @Override
+    public void copyInto(MarioSprite target) {
+        super.copyInto(target);
+        Mario sprite = (Mario) target;
+        sprite.isLarge = isLarge;
+        sprite.isFire = isFire;
+        sprite.oldLarge = false;
+        sprite.oldFire = false;
+        sprite.wasOnGround = wasOnGround;
+        sprite.onGround = onGround;
+        sprite.isDucking = isDucking;
+        sprite.canShoot = canShoot;
+        sprite.mayJump = mayJump;
+        // the actions array belongs to whoever called update, never write into it
+        if (sprite.copiedActions == null || sprite.copiedActions.length != this.actions.length) {
+            sprite.copiedActions = new boolean[this.actions.length];
+        }
+        System.arraycopy(this.actions, 0, sprite.copiedActions, 0, this.actions.length);
+        sprite.actions = sprite.copiedActions;
+        sprite.xJumpSpeed = xJumpSpeed;
+        sprite.yJumpSpeed = yJumpSpeed;
+        sprite.invulnerableTime = invulnerableTime;
+        sprite.jumpTime = jumpTime;
+        sprite.xJumpStart = xJumpStart;
+        sprite.marioFrameSpeed = 0;
+    }
+
     private boolean move(float xa, float ya) {
         while (xa > 8) {
             if (!move(8, 0))
@@ -161,7 +190,7 @@ public class Mario extends MarioSprite {
         boolean blocking = world.level.isBlocking(xTile, yTile, xa, ya);
         int block = world.level.getBlock(xTile, yTile);
 
-        if (TileFeature.getTileType(block).contains(TileFeature.PICKABLE)) {
+        if (TileFeature.hasFeature(block, TileFeature.PICKABLE)) {
             this.world.addEvent(EventType.COLLECT, block);
             this.collectCoin();
             world.level.setBlock(xTile, yTile, 0);
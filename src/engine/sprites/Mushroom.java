@@ -38,6 +38,7 @@ public class Mushroom extends MarioSprite {
         m.xa = this.xa;
         m.ya = this.ya;
         m.initialCode = this.initialCode;
+        m.spawnId = this.spawnId;
         m.width = this.width;
         m.height = this.height;
         m.facing = this.facing;
@@ -46,6 +47,14 @@ public class Mushroom extends MarioSprite {
         return m;
     }
 
+    @Override
+    public void copyInto(MarioSprite target) {
+        super.copyInto(target);
+        Mushroom m = (Mushroom) target;
+        m.life = this.life;
+        m.onGround = this.onGround;
+    }
+
     public void collideCheck() {
         if (!this.alive) {
             return;
@@ -39,6 +39,7 @@ public class Shell extends MarioSprite {
     @Override
     public MarioSprite clone() {
         Shell sprite = new Shell(false, this.x, this.y, this.shellType, this.initialCode);
+        sprite.spawnId = this.spawnId;
         sprite.xa = this.xa;
         sprite.ya = this.ya;
         sprite.width = this.width;
@@ -48,6 +49,14 @@ public class Shell extends MarioSprite {
         return sprite;
     }
 
+    @Override
+    public void copyInto(MarioSprite target) {
+        super.copyInto(target);
+        Shell sprite = (Shell) target;
+        sprite.shellType = this.shellType;
+        sprite.onGround = this.onGround;
+    }
+
     @Override
     public void update() {
         if (!this.alive) return;
@@ -53,9 +53,18 @@ public class LevelGenerator implements MarioLevelGenerator {
     }
 
     public LevelGenerator(int maxGaps, int maxTurtles, int maxCoinBlocks) {
+        this(maxGaps, maxTurtles, maxCoinBlocks, new Random());
+    }
+
+    public LevelGenerator(Random random) {
+        this(10, 7, 10, random);
+    }
+
+    public LevelGenerator(int maxGaps, int maxTurtles, int maxCoinBlocks, Random random) {
         this.maxGaps = maxGaps;
         this.maxTurtles = maxTurtles;
         this.maxCoinBlocks = maxCoinBlocks;
+        this.rand = random;
     }
 
     private void placeBlock(MarioLevelModel model, int x, int y) {
@@ -114,7 +123,6 @@ public class LevelGenerator implements MarioLevelGenerator {
     }
 
     public String getGeneratedLevel(MarioLevelModel model, MarioTimer timer) {
-        this.rand = new Random();
         model.clearMap();
 
         ArrayList<Integer> ground = new ArrayList<Integer>();
@@ -220,7 +228,7 @@ public class LevelGenerator implements MarioLevelGenerator {
         for (Integer h : ground) {
             if (x > minX && rand.nextDouble() < CHANCE_PIPE) {
                 if (h == lastY && lastlastY <= lastY && x > (lastX + 1)) {
-                    int height = PIPE_MIN_HEIGHT + (int) (Math.random() * PIPE_HEIGHT);
+                    int height = PIPE_MIN_HEIGHT + (int) (rand.nextDouble() * PIPE_HEIGHT);
                     placePipe(model, x - 1, h, height);
                     lastX = x;
                 }
@@ -295,7 +303,7 @@ public class LevelGenerator implements MarioLevelGenerator {
         x = 0;
         for (Integer h : ground) {
             if (x > 5 && rand.nextDouble() < CHANCE_COIN) {
-                y = h - (int) (1 + Math.random() * COIN_HEIGHT);
+                y = h - (int) (1 + rand.nextDouble() * COIN_HEIGHT);
 
                 char tile = model.getBlock(x, y);
                 if (tile == MarioLevelModel.EMPTY) {
@@ -21,6 +21,14 @@ public class LevelGenerator implements MarioLevelGenerator {
 
     private Random rnd;
 
+    public LevelGenerator() {
+        this(new Random());
+    }
+
+    public LevelGenerator(Random random) {
+        this.rnd = random;
+    }
+
     private void placePipe(MarioLevelModel model, int x, int y, int height) {
         char pipeType = MarioLevelModel.PIPE;
         if (this.rnd.nextDouble() < 0.2) {
@@ -63,7 +71,6 @@ public class LevelGenerator implements MarioLevelGenerator {
 
     @Override
     public String getGeneratedLevel(MarioLevelModel model, MarioTimer timer) {
-        this.rnd = new Random();
         model.clearMap();
 
         ArrayList<Integer> groundArea = new ArrayList<Integer>();
@@ -20,7 +20,11 @@ public class LevelGenerator implements MarioLevelGenerator {
     private Random random;
 
     public LevelGenerator() {
-        random = new Random();
+        this(new Random());
+    }
+
+    public LevelGenerator(Random random) {
+        this.random = random;
         this.type = random.nextInt(3);
         this.difficulty = random.nextInt(5);
     }
@@ -16,9 +16,18 @@ public class LevelGenerator implements MarioLevelGenerator {
     private final float ENMEY_PROB = 0.1f;
     private final int FLOOR_PADDING = 3;
 
+    private Random random;
+
+    public LevelGenerator() {
+        this(new Random());
+    }
+
+    public LevelGenerator(Random random) {
+        this.random = random;
+    }
+
     @Override
     public String getGeneratedLevel(MarioLevelModel model, MarioTimer timer) {
-        Random random = new Random();
         model.clearMap();
         for (int x = 0; x < model.getWidth(); x++) {
             for (int y = 0; y < model.getHeight(); y++) {
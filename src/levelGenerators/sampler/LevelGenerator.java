@@ -1,11 +1,12 @@
 package levelGenerators.sampler;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.util.List;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Random;
 
+import engine.core.MarioLevelCorpus;
 import engine.core.MarioLevelGenerator;
 import engine.core.MarioLevelModel;
 import engine.core.MarioTimer;
@@ -15,40 +16,65 @@ public class LevelGenerator implements MarioLevelGenerator {
     private String folderName = "levels/original/";
 
     private Random rnd;
+    private MarioLevelCorpus corpus;
+    private IOException corpusError;
 
     public LevelGenerator() {
         this("levels/original/", 10);
     }
 
+    /**
+     * @param sampleFolder a folder of levels or a corpus file written by MarioLevelCorpus.pack
+     */
     public LevelGenerator(String sampleFolder) {
         this(sampleFolder, 10);
     }
 
     public LevelGenerator(String sampleFolder, int sampleWidth) {
+        this(sampleFolder, sampleWidth, new Random());
+    }
+
+    public LevelGenerator(Random random) {
+        this("levels/original/", 10, random);
+    }
+
+    public LevelGenerator(String sampleFolder, int sampleWidth, Random random) {
         this.sampleWidth = sampleWidth;
         this.folderName = sampleFolder;
+        this.rnd = random;
     }
 
-    private String getRandomLevel() throws IOException {
-        File[] listOfFiles = new File(folderName).listFiles();
-        List<String> lines = Files.readAllLines(listOfFiles[rnd.nextInt(listOfFiles.length)].toPath());
-        String result = "";
-        for (int i = 0; i < lines.size(); i++) {
-            result += lines.get(i) + "\n";
+    /**
+     * Load the sample levels the first time they are needed. A folder that can't be read
+     * is only tried once, the generator then fails on every level with the same error.
+     */
+    private MarioLevelCorpus getCorpus() {
+        if (this.corpus == null && this.corpusError == null) {
+            Path path = Paths.get(this.folderName);
+            try {
+                if (Files.isRegularFile(path)) {
+                    this.corpus = MarioLevelCorpus.open(path);
+                } else {
+                    this.corpus = MarioLevelCorpus.pack(path, "*");
+                }
+            } catch (IOException e) {
+                this.corpusError = e;
+            }
+        }
+        if (this.corpusError != null) {
+            throw new IllegalStateException("can't read the sample levels of " + this.folderName + ": "
+                    + this.corpusError.getMessage(), this.corpusError);
         }
-        return result;
+        return this.corpus;
     }
 
     @Override
     public String getGeneratedLevel(MarioLevelModel model, MarioTimer timer) {
-        rnd = new Random();
         model.clearMap();
+        MarioLevelCorpus corpus = this.getCorpus();
         for (int i = 0; i < model.getWidth() / sampleWidth; i++) {
-            try {
-                model.copyFromString(i * sampleWidth, 0, i * sampleWidth, 0, sampleWidth, model.getHeight(), this.getRandomLevel());
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            corpus.copyTo(rnd.nextInt(corpus.size()), model, i * sampleWidth, 0, i * sampleWidth, 0,
+                    sampleWidth, model.getHeight());
         }
         return model.getMap();
     }